@@ -0,0 +1,32 @@
+/**
+ * description : Entry point of the benchmark jar.
+ * 				Runs the JMH benchmarks with the command line options of JMH and turns on the
+ * 				allocation profiler (-prof gc) unless other profilers are asked for, so that every
+ * 				run reports the bytes allocated per operation on the hot paths.
+ */
+package vmm;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions options = new CommandLineOptions(args);
+
+		if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+				|| options.shouldListProfilers() || options.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args); // nothing to run
+			return;
+		}
+
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+		if (options.getProfilers().isEmpty())
+			builder.addProfiler(GCProfiler.class);
+
+		new Runner(builder.build()).run();
+	}
+}
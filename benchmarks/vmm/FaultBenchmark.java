@@ -0,0 +1,115 @@
+/**
+ * description : Page fault servicing against docs/BACKING_STORE.bin.
+ * 				readPage copies a page from the read-only mapping of the store, readPageWritable
+ * 				and readPagesWritable read one page or eight adjacent pages from a writable copy, the
+ * 				eight pages going straight into the direct frames of a PhysicalMemory.
+ * 				fault and dirtyFault translate a cyclic scan of 256 pages with 16 frames, so every
+ * 				call is a page fault that evicts the least recently used page, which is dirty in
+ * 				dirtyFault and goes through the write-behind flusher.
+ */
+package vmm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FaultBenchmark {
+
+	private static final int SIZE = 256;
+	private static final int PAGES = 256;
+	private static final int FRAMES = 16;
+
+	private BackingStore mappedStore;
+	private ByteBuffer mappedViews[];
+	private BackingStore writableStore;
+	private ByteBuffer writableViews[];
+	private BackingStore engineStore;
+	private TranslationEngine engine;
+	private TranslationEngine dirtyEngine;
+
+	private final byte frame[] = new byte[SIZE];
+	private final PhysicalMemory memory = new PhysicalMemory(8, SIZE, 8 * SIZE);
+	private final ByteBuffer frames[] = new ByteBuffer[8];
+	private int page;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		mappedStore = new BackingStore(Traces.BACKING_STORE, SIZE);
+		mappedViews = mappedStore.newViews();
+		writableStore = BackingStore.writableCopy(Traces.BACKING_STORE, null, SIZE);
+		writableViews = writableStore.newViews();
+		for (int i = 0; i < frames.length; i++)
+			frames[i] = memory.slice(i);
+
+		AddressGeometry geometry = new AddressGeometry(SIZE, 16);
+		engine = new TranslationEngine(geometry, FRAMES, mappedStore, new TranslationLookasideBuffer(),
+				new FlatPageTable(PAGES), new LRUReplacement(FRAMES));
+
+		engineStore = BackingStore.writableCopy(Traces.BACKING_STORE, null, SIZE);
+		dirtyEngine = new TranslationEngine(geometry, FRAMES, engineStore, new TranslationLookasideBuffer(),
+				new FlatPageTable(PAGES), new LRUReplacement(FRAMES));
+		dirtyEngine.setWriteBack(new WriteBehindFlusher(engineStore, WriteBehindFlusher.DEFAULT_SLOTS), 100, 100);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		dirtyEngine.close();
+		engineStore.close();
+		writableStore.close();
+		mappedStore.close();
+	}
+
+	private long nextPage() {
+		page = (page + 1) & (PAGES - 1);
+		return page;
+	}
+
+	@Benchmark
+	public byte readPage() throws IOException {
+		mappedStore.readPage(nextPage(), frame, 0, mappedViews);
+		return frame[0];
+	}
+
+	@Benchmark
+	public byte readPageWritable() throws IOException {
+		writableStore.readPage(nextPage(), frame, 0, writableViews);
+		return frame[0];
+	}
+
+	@Benchmark
+	public byte readPagesWritable() throws IOException {
+		for (ByteBuffer buffer : frames)
+			buffer.clear();
+		writableStore.readPages(nextPage() & ~7, frames, 8, writableViews);
+		return memory.get(0);
+	}
+
+	@Benchmark
+	public long fault() throws IOException {
+		return engine.translate(nextPage() * SIZE, false);
+	}
+
+	@Benchmark
+	public long dirtyFault() throws IOException {
+		return dirtyEngine.translate(nextPage() * SIZE, true);
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * description : Cost of the page replacement policies.
+ * 				Every benchmark call references a page drawn from a working set twice the size of
+ * 				memory: a resident page is touched, any other page takes the frame of the victim
+ * 				chosen by the policy and is admitted, as on a page fault of the translators.
+ */
+package vmm;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplacementBenchmark {
+
+	private static final int REFERENCES = 1 << 16; // length of the reference
+													// string, a power of two
+
+	@Param({ "lru", "fifo", "clock", "lfu", "arc", "2q" })
+	public String policy;
+
+	@Param({ "128", "4096" })
+	public int frames;
+
+	private ReplacementPolicy replacement;
+	private int references[]; // pages referenced, in order
+	private int pageFrame[]; // frame of every page, -1 when not resident
+	private int framePage[]; // page of every frame
+	private int index;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		replacement = ReplacementPolicy.create(policy, frames);
+
+		int pages = frames * 2;
+		references = new int[REFERENCES];
+		long seed = 7;
+		for (int i = 0; i < REFERENCES; i++) {
+			seed = seed * 6364136223846793005L + 1442695040888963407L;
+			references[i] = (int) ((seed >>> 33) % pages);
+		}
+
+		pageFrame = new int[pages];
+		Arrays.fill(pageFrame, -1);
+		framePage = new int[frames];
+		for (int frame = 0; frame < frames; frame++) {
+			framePage[frame] = frame;
+			pageFrame[frame] = frame;
+			replacement.admit(frame, frame);
+		}
+		index = 0;
+	}
+
+	@Benchmark
+	public int reference() {
+		int page = references[index];
+		index = (index + 1) & (REFERENCES - 1);
+
+		int frame = pageFrame[page];
+		if (frame != -1) {
+			replacement.touch(frame);
+			return frame;
+		}
+
+		frame = replacement.victim(page);
+		pageFrame[framePage[frame]] = -1;
+		pageFrame[page] = frame;
+		framePage[frame] = page;
+		replacement.admit(frame, page);
+		return frame;
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * description : Hit and miss paths of the translation lookaside buffer.
+ * 				The hit benchmark looks up pages that are all in the TLB. The miss benchmark
+ * 				looks up a page that is not there and inserts it, which makes the replacement
+ * 				policy choose the victim way of a full set.
+ */
+package vmm;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TLBBenchmark {
+
+	@Param({ "LRU", "FIFO", "LFU", "RANDOM" })
+	public String policy;
+
+	@Param({ "1", "4", "16" })
+	public int ways;
+
+	@Param({ "16", "64" })
+	public int entries;
+
+	private TranslationLookasideBuffer TLB;
+	private long nextPage; // next page never seen by the TLB
+	private int hit;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		TLB = new TranslationLookasideBuffer(entries, ways, TranslationLookasideBuffer.Policy.valueOf(policy));
+		// Pages 0 to entries - 1 fill every set, whatever the associativity
+		for (int page = 0; page < entries; page++)
+			TLB.insert(page, page);
+		nextPage = entries;
+	}
+
+	@Benchmark
+	public int hit() {
+		hit = (hit + 1) & (entries - 1);
+		return TLB.lookup(hit);
+	}
+
+	@Benchmark
+	public long miss() {
+		long page = nextPage++;
+		if (TLB.lookup(page) != -1)
+			return -1;
+		return TLB.insert(page, (int) page);
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * description : Address traces of the benchmarks.
+ * 				The bundled traces of docs are read with TraceReader, the synthetic traces are
+ * 				generated from a fixed seed so that every run translates the same addresses:
+ * 				uniform covers the whole 16 bit address space, hotset sends 90% of the accesses to
+ * 				10% of the pages and scan reads the address space sequentially. zipf comes from
+ * 				WorkloadGenerator, with Zipfian pages of exponent 0.99. A quarter of the synthetic
+ * 				accesses are writes.
+ */
+package vmm;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class Traces {
+
+	public static final String DOCS = System.getProperty("vmm.docs", "docs/");
+	public static final String BACKING_STORE = DOCS + "BACKING_STORE.bin";
+
+	public static final int SYNTHETIC_LENGTH = 1 << 20; // accesses of a
+														// synthetic trace
+	private static final int ADDRESS_SPACE = 1 << 16;
+
+	private final long addresses[];
+	private final boolean writes[];
+
+	private Traces(long addresses[], boolean writes[]) {
+		this.addresses = addresses;
+		this.writes = writes;
+	}
+
+	/**
+	 * @param name
+	 *            : file of docs, such as addresses.txt, or uniform, hotset,
+	 *            scan or zipf
+	 */
+	public static Traces load(String name) throws IOException {
+		switch (name) {
+		case "uniform":
+		case "hotset":
+		case "scan":
+			return generate(name, SYNTHETIC_LENGTH, 42);
+		case "zipf":
+			return generate(new WorkloadGenerator("zipf", new AddressGeometry(256, 16), ADDRESS_SPACE / 256,
+					SYNTHETIC_LENGTH, 0.25, 42));
+		default:
+			return read(DOCS + name);
+		}
+	}
+
+	private static Traces read(String fileName) throws IOException {
+		long addresses[] = new long[1024];
+		boolean writes[] = new boolean[1024];
+		int length = 0;
+
+		try (TraceReader reader = new TraceReader(fileName)) {
+			while (reader.next()) {
+				if (length == addresses.length) {
+					addresses = Arrays.copyOf(addresses, length * 2);
+					writes = Arrays.copyOf(writes, length * 2);
+				}
+				addresses[length] = reader.address();
+				writes[length++] = reader.isWrite();
+			}
+		}
+
+		return new Traces(Arrays.copyOf(addresses, length), Arrays.copyOf(writes, length));
+	}
+
+	private static Traces generate(String kind, int length, long seed) {
+		long addresses[] = new long[length];
+		boolean writes[] = new boolean[length];
+
+		for (int i = 0; i < length; i++) {
+			seed += 0x9E3779B97F4A7C15L; // SplitMix64
+			long random = seed;
+			random = (random ^ (random >>> 30)) * 0xBF58476D1CE4E5B9L;
+			random = (random ^ (random >>> 27)) * 0x94D049BB133111EBL;
+			random ^= random >>> 31;
+
+			int bits = (int) (random >>> 32);
+			switch (kind) {
+			case "uniform":
+				addresses[i] = bits & (ADDRESS_SPACE - 1);
+				break;
+			case "hotset":
+				// 90% of the accesses go to the first 10% of the space
+				int hot = ADDRESS_SPACE / 10;
+				addresses[i] = ((bits & 0x7FFFFFFF) % 10 != 0) ? (random & 0x7FFFFFFF) % hot
+						: hot + (random & 0x7FFFFFFF) % (ADDRESS_SPACE - hot);
+				break;
+			default: // scan
+				addresses[i] = (i * 16L) & (ADDRESS_SPACE - 1);
+				break;
+			}
+			writes[i] = (random & 3) == 0;
+		}
+
+		return new Traces(addresses, writes);
+	}
+
+	private static Traces generate(WorkloadGenerator workload) {
+		long addresses[] = new long[(int) workload.getAccesses()];
+		boolean writes[] = new boolean[addresses.length];
+
+		for (int i = 0; workload.next(); i++) {
+			addresses[i] = workload.address();
+			writes[i] = workload.isWrite();
+		}
+
+		return new Traces(addresses, writes);
+	}
+
+	public int length() {
+		return addresses.length;
+	}
+
+	public long address(int index) {
+		return addresses[index];
+	}
+
+	public boolean isWrite(int index) {
+		return writes[index];
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * description : Translation throughput of the three translators.
+ * 				Each benchmark call translates the next address of the trace with the engine of
+ * 				SameSizeTranslation, ModifiedSizeTranslation or DirtyBitTranslation, wrapping
+ * 				around at the end of the trace. The dirty bit engine writes back to a temporary
+ * 				copy of the backing store.
+ */
+package vmm;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranslatorBenchmark {
+
+	@Param({ "sameSize", "modifiedSize", "dirtyBit" })
+	public String translator;
+
+	@Param({ "addresses.txt", "uniform", "hotset", "scan", "zipf" })
+	public String trace;
+
+	private Traces addresses;
+	private BackingStore backingStore;
+	private TranslationEngine engine;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		addresses = Traces.load(trace);
+		AddressGeometry geometry = new AddressGeometry(256, 16);
+
+		switch (translator) {
+		case "sameSize":
+			backingStore = new BackingStore(Traces.BACKING_STORE, 256);
+			engine = TranslationEngine.sameSize(backingStore);
+			break;
+		case "modifiedSize":
+			backingStore = new BackingStore(Traces.BACKING_STORE, 256);
+			engine = TranslationEngine.modifiedSize(geometry, backingStore);
+			break;
+		default:
+			backingStore = BackingStore.writableCopy(Traces.BACKING_STORE, null, 256);
+			engine = TranslationEngine.dirtyBit(geometry, backingStore);
+			break;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		engine.close();
+		backingStore.close();
+	}
+
+	@Benchmark
+	public long translate() throws IOException {
+		int i = index;
+		index = (i + 1 == addresses.length()) ? 0 : i + 1;
+
+		return engine.translate(addresses.address(i), addresses.isWrite(i)) + engine.getValue();
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * description : Adaptive replacement cache (Megiddo and Modha).
+ * 				Resident frames are split between T1, pages referenced once since they were
+ * 				loaded, and T2, pages referenced at least twice. The ghost lists B1 and B2
+ * 				remember pages recently evicted from T1 and T2. A fault on a page remembered in
+ * 				B1 grows the target size p of T1 and a fault on a page in B2 shrinks it, so the
+ * 				policy moves between recency and frequency as the trace changes. Every list is
+ * 				an intrusive list and every operation is constant time.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class ARCReplacement implements ReplacementPolicy {
+
+	private final int capacity; // c, the number of frames
+
+	private final int framePrev[];
+	private final int frameNext[];
+	private final FrameList t1;
+	private final FrameList t2;
+	private final boolean inT2[];
+	private final long framePage[];
+
+	private final GhostList.Pool ghosts;
+	private final GhostList b1;
+	private final GhostList b2;
+
+	private int p; // target size of T1
+	private long adaptedPage; // page whose ghost hit already adapted p
+
+	public ARCReplacement(int frames) {
+		capacity = frames;
+
+		framePrev = new int[frames];
+		frameNext = new int[frames];
+		t1 = new FrameList(framePrev, frameNext);
+		t2 = new FrameList(framePrev, frameNext);
+		inT2 = new boolean[frames];
+		framePage = new long[frames];
+
+		ghosts = new GhostList.Pool(frames);
+		b1 = new GhostList(ghosts);
+		b2 = new GhostList(ghosts);
+
+		p = 0;
+		adaptedPage = -1;
+	}
+
+	@Override
+	public void touch(int frame) {
+		// a hit in T1 or T2 makes the page frequently used
+		listOf(frame).remove(frame);
+		t2.addFirst(frame);
+		inT2[frame] = true;
+	}
+
+	@Override
+	public void admit(int frame, long page) {
+		GhostList ghost = ghosts.find(page);
+		framePage[frame] = page;
+
+		if (ghost != null) {
+			if (adaptedPage != page)
+				adapt(ghost);
+			ghost.remove(page);
+			t2.addFirst(frame);
+			inT2[frame] = true;
+		} else {
+			// keep the directory within its bounds: |T1| + |B1| <= c and
+			// |T1| + |T2| + |B1| + |B2| <= 2c
+			if (t1.size() + b1.size() >= capacity && b1.size() > 0)
+				b1.removeLast();
+			else if (t1.size() + t2.size() + b1.size() + b2.size() >= 2 * capacity && b2.size() > 0)
+				b2.removeLast();
+			t1.addFirst(frame);
+			inT2[frame] = false;
+		}
+		adaptedPage = -1;
+	}
+
+	@Override
+	public int victim(long page) {
+		GhostList ghost = ghosts.find(page);
+		if (ghost != null) {
+			adapt(ghost);
+			adaptedPage = page;
+		} else if (t1.size() == capacity) {
+			// T1 alone fills memory: its oldest page is dropped without being
+			// remembered
+			return t1.removeLast();
+		}
+
+		// REPLACE: evict from T1 when it is above its target, otherwise from
+		// T2, and remember the evicted page in the matching ghost list
+		boolean fromT1 = t1.size() > 0 && ((ghost == b2 && t1.size() == p) || t1.size() > p || t2.size() == 0);
+		int frame = fromT1 ? t1.removeLast() : t2.removeLast();
+
+		if (ghosts.isFull()) {
+			if (b2.size() > b1.size())
+				b2.removeLast();
+			else
+				b1.removeLast();
+		}
+		(fromT1 ? b1 : b2).add(framePage[frame]);
+
+		return frame;
+	}
+
+	@Override
+	public void remove(int frame) {
+		listOf(frame).remove(frame);
+	}
+
+	@Override
+	public String getName() {
+		return "ARC";
+	}
+
+	@Override
+	public void save(DataOutput out) throws IOException {
+		out.writeInt(p);
+		out.writeLong(adaptedPage);
+		for (int frame = 0; frame < capacity; frame++)
+			out.writeLong(framePage[frame]);
+		t1.save(out);
+		t2.save(out);
+		b1.save(out);
+		b2.save(out);
+	}
+
+	@Override
+	public void restore(DataInput in) throws IOException {
+		p = in.readInt();
+		adaptedPage = in.readLong();
+		for (int frame = 0; frame < capacity; frame++)
+			framePage[frame] = in.readLong();
+		t1.restore(in);
+		t2.restore(in);
+		for (int frame = t2.first(); frame != -1; frame = t2.next(frame))
+			inT2[frame] = true;
+		b1.restore(in);
+		b2.restore(in);
+	}
+
+	/**
+	 * Move the target size of T1 towards the list whose ghost was hit
+	 */
+	private void adapt(GhostList ghost) {
+		if (ghost == b1)
+			p = Math.min(capacity, p + Math.max(b2.size() / Math.max(b1.size(), 1), 1));
+		else
+			p = Math.max(0, p - Math.max(b1.size() / Math.max(b2.size(), 1), 1));
+	}
+
+	private FrameList listOf(int frame) {
+		return inT2[frame] ? t2 : t1;
+	}
+}
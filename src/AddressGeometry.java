@@ -0,0 +1,86 @@
+/**
+ * description : Layout of a logical address: the page size and the width of the virtual
+ * 				address space. The page number is the address shifted right by the offset bits
+ * 				and the offset is the address masked by the page size. The defaults, 256 byte
+ * 				pages and 16 bit addresses, are the layout the translators were written for;
+ * 				the page.size and address.bits system properties select others, for example
+ * 				4096 byte pages in a 48 bit address space.
+ */
+
+public class AddressGeometry {
+
+	private final int pageSize;
+	private final int offsetBits;
+	private final long offsetMask;
+	private final int addressBits;
+	private final long maxAddress;
+
+	/**
+	 * @param pageSize
+	 *            : size of a page and of a frame in bytes, a power of two
+	 * @param addressBits
+	 *            : width of a logical address, at most 63 bits
+	 */
+	public AddressGeometry(int pageSize, int addressBits) {
+		if (pageSize <= 0 || (pageSize & (pageSize - 1)) != 0)
+			throw new IllegalArgumentException("Page size " + pageSize + " is not a power of two");
+		if (addressBits > 63 || (1L << addressBits) < pageSize)
+			throw new IllegalArgumentException("Invalid address width " + addressBits + " for page size " + pageSize);
+
+		this.pageSize = pageSize;
+		this.offsetBits = Integer.numberOfTrailingZeros(pageSize);
+		this.offsetMask = pageSize - 1;
+		this.addressBits = addressBits;
+		this.maxAddress = (1L << addressBits) - 1;
+	}
+
+	public static AddressGeometry fromSystemProperties() {
+		return new AddressGeometry(Integer.getInteger("page.size", 256), Integer.getInteger("address.bits", 16));
+	}
+
+	public long pageNumber(long logicalAddress) {
+		return logicalAddress >>> offsetBits;
+	}
+
+	public int offset(long logicalAddress) {
+		return (int) (logicalAddress & offsetMask);
+	}
+
+	/**
+	 * True if the address fits in the virtual address space
+	 */
+	public boolean contains(long logicalAddress) {
+		return logicalAddress >= 0 && logicalAddress <= maxAddress;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public int getOffsetBits() {
+		return offsetBits;
+	}
+
+	/**
+	 * Number of bits of the page number
+	 */
+	public int getPageBits() {
+		return addressBits - offsetBits;
+	}
+
+	public int getAddressBits() {
+		return addressBits;
+	}
+
+	/**
+	 * Number of pages in the virtual address space
+	 */
+	public long getPageCount() {
+		return 1L << getPageBits();
+	}
+
+	@Override
+	public String toString() {
+		return addressBits + " bit addresses, " + pageSize + " byte pages";
+	}
+}
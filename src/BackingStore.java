@@ -0,0 +1,339 @@
+/**
+ * description : Read access to the backing store file.
+ * 				The file is opened once and memory mapped with NIO, so a page fault only copies
+ * 				the page from the mapping into the frame instead of opening, seeking and closing
+ * 				the file again. Stores larger than 2 GB are mapped as several windows, each window
+ * 				being a whole number of pages so that a page never spans two windows.
+ * 				Pages of a mapped store can be read by several threads at once: every reader, an
+ * 				engine or a worker, takes its own views of the windows once and passes them to its
+ * 				reads, so that a read neither allocates nor moves the position of another reader.
+ * 				A writable copy of the store can be opened for translators that write dirty pages
+ * 				back. The copy is read and written with positional channel I/O, so a write of
+ * 				several adjacent pages is a single call and a write is always seen by later reads.
+ * 				Pages are read into arrays, or into buffers such as the direct frames of
+ * 				PhysicalMemory, which a writable copy fills from the channel without a copy through
+ * 				the heap.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+public class BackingStore implements Closeable {
+
+	private static final long MAX_WINDOW_SIZE = 1L << 30; // Largest single
+															// mapping, kept well
+															// below 2 GB
+
+	private final int pageSize;
+	private final long windowSize;
+	private final long length;
+
+	private RandomAccessFile file = null;
+	private FileChannel channel = null;
+	private MappedByteBuffer windows[] = null; // null for a writable store
+	private File temporaryCopy = null; // copy deleted when the store is closed
+	private final byte zeroPage[]; // zeros of the pages beyond the end of the
+									// store, never written
+
+	public BackingStore(String fileName, int pageSize) throws IOException {
+		this(fileName, pageSize, MAX_WINDOW_SIZE);
+	}
+
+	/**
+	 * Open a writable copy of the backing store, so that dirty pages can be
+	 * written back without changing the original file
+	 *
+	 * @param fileName
+	 *            : path of the backing store file
+	 * @param copyName
+	 *            : path of the copy, null for a temporary file deleted on close
+	 * @param pageSize
+	 *            : size of a page in bytes
+	 */
+	public static BackingStore writableCopy(String fileName, String copyName, int pageSize) throws IOException {
+		File copy = (copyName == null) ? File.createTempFile("backing-store", ".bin") : new File(copyName);
+		Files.copy(new File(fileName).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		return openWritable(copy, pageSize, copyName == null);
+	}
+
+	/**
+	 * Open an existing file as a writable store, for example a copy restored
+	 * from a snapshot
+	 *
+	 * @param file
+	 *            : store file, read and written in place
+	 * @param pageSize
+	 *            : size of a page in bytes
+	 * @param deleteOnClose
+	 *            : true for a temporary file deleted when the store is closed
+	 */
+	public static BackingStore openWritable(File file, int pageSize, boolean deleteOnClose) throws IOException {
+		BackingStore store = new BackingStore(file, pageSize);
+		if (deleteOnClose)
+			store.temporaryCopy = file;
+		return store;
+	}
+
+	/**
+	 * Open a file for reading and writing
+	 */
+	private BackingStore(File copy, int pageSize) throws IOException {
+		if (pageSize <= 0)
+			throw new IllegalArgumentException("Invalid page size " + pageSize);
+
+		this.pageSize = pageSize;
+		this.windowSize = 0;
+		this.zeroPage = new byte[pageSize];
+
+		file = new RandomAccessFile(copy, "rw");
+		channel = file.getChannel();
+		length = channel.size();
+	}
+
+	/**
+	 * Map the backing store
+	 *
+	 * @param fileName
+	 *            : path of the backing store file
+	 * @param pageSize
+	 *            : size of a page in bytes
+	 * @param maxWindowSize
+	 *            : largest number of bytes covered by one mapping
+	 */
+	public BackingStore(String fileName, int pageSize, long maxWindowSize) throws IOException {
+		if (pageSize <= 0 || maxWindowSize < pageSize)
+			throw new IllegalArgumentException("Invalid page size " + pageSize + " for window size " + maxWindowSize);
+
+		this.pageSize = pageSize;
+		this.windowSize = (maxWindowSize / pageSize) * pageSize;
+		this.zeroPage = new byte[pageSize];
+
+		file = new RandomAccessFile(fileName, "r");
+		channel = file.getChannel();
+		length = channel.size();
+
+		int count = (int) ((length + windowSize - 1) / windowSize);
+		windows = new MappedByteBuffer[count];
+
+		for (int i = 0; i < count; i++) {
+			long position = i * windowSize;
+			long size = Math.min(windowSize, length - position);
+			windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		}
+	}
+
+	/**
+	 * Views of the windows of a mapped store for one reader, each with a
+	 * position of its own. A reader takes them once and passes them to all
+	 * its reads, which must not be made by another thread at the same time
+	 *
+	 * @return views to pass to the reads, empty for a writable store
+	 */
+	public ByteBuffer[] newViews() {
+		ByteBuffer views[] = new ByteBuffer[(windows == null) ? 0 : windows.length];
+		for (int i = 0; i < views.length; i++)
+			views[i] = windows[i].duplicate();
+		return views;
+	}
+
+	/**
+	 * Copy one page of the backing store into the destination array. Pages
+	 * beyond the end of the store have never been written and read as zeros,
+	 * which lets large virtual address spaces use a small store
+	 *
+	 * @param pageNumber
+	 *            : page to be read
+	 * @param destination
+	 *            : array receiving the page, normally the physical memory
+	 * @param offset
+	 *            : position in the destination where the page starts
+	 * @param views
+	 *            : views of the reader, from newViews
+	 */
+	public void readPage(long pageNumber, byte destination[], int offset, ByteBuffer views[]) throws IOException {
+		if (pageNumber < 0)
+			throw new IndexOutOfBoundsException("Invalid page " + pageNumber);
+
+		long position = pageNumber * pageSize;
+
+		if (windows == null) { // writable store, the file may have grown
+			ByteBuffer buffer = ByteBuffer.wrap(destination, offset, pageSize);
+			while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position() - offset) >= 0)
+				;
+			Arrays.fill(destination, buffer.position(), offset + pageSize, (byte) 0);
+			return;
+		}
+
+		// bytes of the page present in the file
+		int stored = (int) Math.max(0, Math.min(pageSize, length - position));
+
+		if (stored > 0) {
+			ByteBuffer window = views[(int) (position / windowSize)];
+			int windowOffset = (int) (position % windowSize);
+			window.limit(windowOffset + stored).position(windowOffset);
+			window.get(destination, offset, stored);
+		}
+		if (stored < pageSize)
+			Arrays.fill(destination, offset + stored, offset + pageSize, (byte) 0);
+	}
+
+	/**
+	 * Copy one page of the backing store into a buffer, normally a frame of
+	 * the physical memory. A mapped store copies the page from the mapping
+	 * and a writable store reads it with the channel, straight into the buffer
+	 * when it is direct
+	 *
+	 * @param pageNumber
+	 *            : page to be read
+	 * @param destination
+	 *            : buffer receiving the page between its position and its
+	 *            limit, its position is moved to its limit
+	 * @param views
+	 *            : views of the reader, from newViews
+	 */
+	public void readPage(long pageNumber, ByteBuffer destination, ByteBuffer views[]) throws IOException {
+		if (pageNumber < 0)
+			throw new IndexOutOfBoundsException("Invalid page " + pageNumber);
+		if (destination.remaining() != pageSize)
+			throw new IllegalArgumentException("Buffer of " + destination.remaining() + " bytes for a page");
+
+		long position = pageNumber * pageSize;
+
+		if (windows == null) { // writable store, the file may have grown
+			int start = destination.position();
+			while (destination.hasRemaining()
+					&& channel.read(destination, position + destination.position() - start) >= 0)
+				;
+			zero(destination);
+			return;
+		}
+
+		int stored = (int) Math.max(0, Math.min(pageSize, length - position));
+
+		if (stored > 0) {
+			ByteBuffer window = views[(int) (position / windowSize)];
+			int offset = (int) (position % windowSize);
+			window.limit(offset + stored).position(offset);
+			destination.put(window);
+		}
+		zero(destination);
+	}
+
+	/**
+	 * Copy adjacent pages of the backing store into page sized buffers. A
+	 * writable store reads them with a single scattering read, each page going
+	 * to its own buffer. Used to read ahead several pages on a page fault
+	 *
+	 * @param firstPage
+	 *            : first page to be read
+	 * @param destinations
+	 *            : buffers receiving the pages, normally frames of the
+	 *            physical memory, each holding a page between its position and
+	 *            its limit
+	 * @param count
+	 *            : number of adjacent pages
+	 * @param views
+	 *            : views of the reader, from newViews
+	 */
+	public void readPages(long firstPage, ByteBuffer destinations[], int count, ByteBuffer views[])
+			throws IOException {
+		if (windows != null || count == 1) {
+			// a mapping needs no system call, the pages are copied one by one
+			for (int i = 0; i < count; i++)
+				readPage(firstPage + i, destinations[i], views);
+			return;
+		}
+
+		if (firstPage < 0)
+			throw new IndexOutOfBoundsException("Invalid page " + firstPage);
+
+		// the flusher writes with positional calls, which leave the position
+		// of the channel alone
+		channel.position(firstPage * pageSize);
+		ByteBuffer last = destinations[count - 1];
+		while (last.hasRemaining() && channel.read(destinations, 0, count) >= 0)
+			;
+
+		for (int i = 0; i < count; i++)
+			zero(destinations[i]);
+	}
+
+	/**
+	 * Fill the rest of a buffer with zeros, the part of a page beyond the end
+	 * of the store
+	 */
+	private void zero(ByteBuffer buffer) {
+		if (buffer.hasRemaining())
+			buffer.put(zeroPage, 0, buffer.remaining());
+	}
+
+	/**
+	 * Write pages stored one after the other in the buffer, starting at the
+	 * first page. Several adjacent pages are written with a single call. Can
+	 * be called by another thread than the one reading pages
+	 *
+	 * @param firstPage
+	 *            : page number of the first page in the buffer
+	 * @param source
+	 *            : buffer holding a whole number of pages between its position
+	 *            and its limit
+	 */
+	public void writePages(long firstPage, ByteBuffer source) throws IOException {
+		if (windows != null)
+			throw new IllegalStateException("Backing store is read only");
+		if (firstPage < 0 || source.remaining() % pageSize != 0)
+			throw new IllegalArgumentException("Invalid write of " + source.remaining() + " bytes at page " + firstPage);
+
+		long position = firstPage * pageSize;
+		while (source.hasRemaining())
+			position += channel.write(source, position);
+	}
+
+	/**
+	 * Copy the whole store file to the current position of a channel. The
+	 * bytes go from file to file without passing through the heap
+	 *
+	 * @return number of bytes copied
+	 */
+	public long transferTo(FileChannel target) throws IOException {
+		long size = channel.size();
+		long copied = 0;
+		while (copied < size)
+			copied += channel.transferTo(copied, size - copied, target);
+		return size;
+	}
+
+	public boolean isWritable() {
+		return windows == null;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Number of whole pages held by the backing store
+	 */
+	public long getPageCount() {
+		return length / pageSize;
+	}
+
+	@Override
+	public void close() throws IOException {
+		windows = null; // the mappings are released once the windows and
+						// the views of the readers are unreachable
+		channel.close();
+		file.close();
+		if (temporaryCopy != null)
+			temporaryCopy.delete();
+	}
+}
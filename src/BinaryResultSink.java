@@ -0,0 +1,70 @@
+/**
+ * description : Result sink writing compact binary records.
+ * 				Each record is 17 bytes in big endian order: the virtual address and the physical
+ * 				address as 8 byte longs followed by the value as one signed byte. Records are
+ * 				packed into a large buffer that is written out when full. Messages are not
+ * 				stored.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class BinaryResultSink implements ResultSink {
+
+	public static final int RECORD_SIZE = 17;
+
+	private static final int BUFFER_SIZE = RECORD_SIZE * 4096;
+
+	private final OutputStream out;
+	private final boolean closeStream;
+	private final byte buffer[];
+	private int count;
+
+	/**
+	 * @param out
+	 *            : stream receiving the records
+	 * @param closeStream
+	 *            : close the stream with the sink, false for standard output
+	 */
+	public BinaryResultSink(OutputStream out, boolean closeStream) {
+		this.out = out;
+		this.closeStream = closeStream;
+		buffer = new byte[BUFFER_SIZE];
+		count = 0;
+	}
+
+	@Override
+	public void record(long virtualAddress, long physicalAddress, int value) throws IOException {
+		if (count == BUFFER_SIZE)
+			flush();
+
+		putLong(virtualAddress);
+		putLong(physicalAddress);
+		buffer[count++] = (byte) value;
+	}
+
+	@Override
+	public void message(String line) {
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (count > 0) {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		if (closeStream)
+			out.close();
+	}
+
+	private void putLong(long value) {
+		for (int shift = 56; shift >= 0; shift -= 8)
+			buffer[count++] = (byte) (value >>> shift);
+	}
+}
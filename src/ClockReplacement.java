@@ -0,0 +1,83 @@
+/**
+ * description : CLOCK (second chance) replacement.
+ * 				Every frame has a reference bit set when its page is referenced. The hand sweeps
+ * 				the frames in order, clearing set bits, and stops at the first resident frame
+ * 				whose bit is clear. A reference costs one store and the sweep is amortized
+ * 				constant time per eviction.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class ClockReplacement implements ReplacementPolicy {
+
+	private final boolean referenced[];
+	private final boolean resident[];
+	private int hand;
+
+	public ClockReplacement(int frames) {
+		referenced = new boolean[frames];
+		resident = new boolean[frames];
+		hand = 0;
+	}
+
+	@Override
+	public void touch(int frame) {
+		referenced[frame] = true;
+	}
+
+	@Override
+	public void admit(int frame, long page) {
+		resident[frame] = true;
+		referenced[frame] = true;
+	}
+
+	@Override
+	public int victim(long page) {
+		// At most two turns: the first one clears every reference bit
+		for (int steps = 0; steps < 2 * resident.length; steps++) {
+			int frame = hand;
+			hand = (hand + 1) % resident.length;
+
+			if (!resident[frame])
+				continue;
+			if (referenced[frame]) {
+				referenced[frame] = false;
+			} else {
+				resident[frame] = false;
+				return frame;
+			}
+		}
+
+		throw new IllegalStateException("No resident frame to replace");
+	}
+
+	@Override
+	public void remove(int frame) {
+		resident[frame] = false;
+		referenced[frame] = false;
+	}
+
+	@Override
+	public String getName() {
+		return "CLOCK";
+	}
+
+	@Override
+	public void save(DataOutput out) throws IOException {
+		out.writeInt(hand);
+		for (int frame = 0; frame < resident.length; frame++)
+			out.writeByte((resident[frame] ? 1 : 0) | (referenced[frame] ? 2 : 0));
+	}
+
+	@Override
+	public void restore(DataInput in) throws IOException {
+		hand = in.readInt();
+		for (int frame = 0; frame < resident.length; frame++) {
+			int bits = in.readByte();
+			resident[frame] = (bits & 1) != 0;
+			referenced[frame] = (bits & 2) != 0;
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/**
+ * description : Compressed pool of evicted pages kept in memory, between physical memory and the backing store.
+ * 				Like zswap, every page evicted from a frame is compressed and kept in a bounded pool,
+ * 				and a page fault first looks the page up there, which replaces a read of the backing
+ * 				store by a decompression. Pages are compressed by the PageCompressor chosen with
+ * 				zswap.compressor, pages that do not shrink are not kept.
+ * 				The pool is a ring of bytes written as a log: compressed pages are appended at the
+ * 				head and the oldest pages are dropped from the tail to make room, so the pool evicts
+ * 				in FIFO order and never needs compaction. A page found by a fault leaves the pool,
+ * 				since it is resident again, and the space it took is reclaimed when the tail passes.
+ * 				The pool only holds clean copies: dirty pages are still written back, so a dropped
+ * 				page is simply read from the backing store the next time.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class CompressedSwapTier {
+
+	private final int pageSize;
+	private final byte pool[]; // ring of compressed pages
+	private final byte compressed[]; // compression output, shorter than a
+										// page
+	private final byte uncompressed[]; // page copied out of its frame, the
+										// codecs work on arrays
+	private final PageCompressor compressor;
+
+	// Entries of the log, from the oldest to the newest, in a ring of
+	// maxEntries. Entry e holds entryPage[e], compressed at
+	// pool[entryOffset[e]] in entryLength[e] bytes, -1 as page when the entry
+	// was loaded or replaced
+	private final long entryPage[];
+	private final int entryOffset[];
+	private final int entryLength[];
+	private int oldest; // oldest entry
+	private int count; // entries in the log
+	private int head; // offset where the next page is written
+
+	private final LongIntHashMap index; // entry of each page in the pool
+
+	private long storedBytes; // compressed bytes of the pages in the pool
+
+	// Statistics
+	private long stores; // pages compressed into the pool
+	private long rejected; // pages not kept because they did not shrink
+	private long uncompressedTotal; // bytes of the pages kept
+	private long compressedTotal; // compressed bytes of the pages kept
+	private long lookups; // page faults looking the pool up
+	private long hits; // page faults served by the pool
+	private long dropped; // pages evicted from the pool unused
+
+	/**
+	 * @param pageSize
+	 *            : size of a page in bytes
+	 * @param poolBytes
+	 *            : capacity of the pool in compressed bytes
+	 * @param compressor
+	 *            : codec of the pages
+	 */
+	public CompressedSwapTier(int pageSize, int poolBytes, PageCompressor compressor) {
+		if (poolBytes < pageSize)
+			throw new IllegalArgumentException("Pool of " + poolBytes + " bytes is smaller than a page");
+
+		this.pageSize = pageSize;
+		this.compressor = compressor;
+		pool = new byte[poolBytes];
+		compressed = new byte[pageSize - 1];
+		uncompressed = new byte[pageSize];
+
+		int maxEntries = poolBytes / 8 + 1; // a compressed page takes a few
+											// bytes at least
+		entryPage = new long[maxEntries];
+		entryOffset = new int[maxEntries];
+		entryLength = new int[maxEntries];
+		index = new LongIntHashMap();
+	}
+
+	/**
+	 * Create the tier asked for by the system properties: zswap.percent gives
+	 * the size of the pool as a percentage of physical memory and
+	 * zswap.compressor the codec
+	 *
+	 * @return null when zswap.percent is not set or is 0
+	 */
+	public static CompressedSwapTier fromSystemProperties(int pageSize, int frames) {
+		int percent = Integer.getInteger("zswap.percent", 0);
+		if (percent <= 0)
+			return null;
+
+		long poolBytes = Math.max(pageSize, (long) frames * pageSize * percent / 100);
+		return new CompressedSwapTier(pageSize, (int) Math.min(Integer.MAX_VALUE - 8, poolBytes),
+				PageCompressor.fromSystemProperties());
+	}
+
+	/**
+	 * Compress an evicted page into the pool, replacing an older copy of the
+	 * page and dropping the oldest pages if there is no room
+	 *
+	 * @param page
+	 *            : page number
+	 * @param source
+	 *            : buffer holding the page between its position and its limit,
+	 *            normally a frame of the physical memory
+	 */
+	public void store(long page, ByteBuffer source) {
+		invalidate(page);
+
+		source.get(uncompressed);
+		int length = compressor.compress(uncompressed, 0, pageSize, compressed);
+		if (length == -1) {
+			rejected++; // incompressible, keeping it would take more room
+						// than the page
+			return;
+		}
+
+		int position = allocate(length);
+		System.arraycopy(compressed, 0, pool, position, length);
+
+		int entry = (oldest + count) % entryPage.length;
+		entryPage[entry] = page;
+		entryOffset[entry] = position;
+		entryLength[entry] = length;
+		count++;
+		head = position + length;
+		index.put(page, entry);
+
+		storedBytes += length;
+		stores++;
+		uncompressedTotal += pageSize;
+		compressedTotal += length;
+	}
+
+	/**
+	 * Decompress a page from the pool into its frame. The page leaves the
+	 * pool
+	 *
+	 * @param page
+	 *            : page being loaded by a page fault
+	 * @param destination
+	 *            : buffer receiving the page between its position and its
+	 *            limit, normally a frame of the physical memory
+	 * @return true if the page was in the pool, false if it has to be read from
+	 *         the backing store
+	 */
+	public boolean load(long page, ByteBuffer destination) throws IOException {
+		lookups++;
+		int entry = index.get(page);
+		if (entry == LongIntHashMap.MISSING)
+			return false;
+
+		if (compressor.decompress(pool, entryOffset[entry], entryLength[entry], uncompressed, 0,
+				pageSize) != pageSize)
+			throw new IOException("Compressed page " + page + " is truncated");
+		destination.put(uncompressed);
+
+		release(entry);
+		hits++;
+		return true;
+	}
+
+	/**
+	 * Forget the copy of a page, if any
+	 */
+	public void invalidate(long page) {
+		int entry = index.get(page);
+		if (entry != LongIntHashMap.MISSING)
+			release(entry);
+	}
+
+	/**
+	 * Find room for length bytes at the head of the log, dropping the oldest
+	 * entries until the bytes fit before the tail or, after wrapping around,
+	 * at the start of the ring
+	 *
+	 * @return offset where the bytes go
+	 */
+	private int allocate(int length) {
+		while (true) {
+			if (count == 0) {
+				head = 0;
+				return 0;
+			}
+			if (count < entryPage.length) {
+				int tail = entryOffset[oldest];
+				if (head > tail) { // free space at the end and the start
+					if (pool.length - head >= length)
+						return head;
+					if (tail >= length)
+						return 0; // wrap around, the end of the ring stays
+									// unused until the tail passes it
+				} else if (tail - head >= length) {
+					return head;
+				}
+			}
+			dropOldest();
+		}
+	}
+
+	/**
+	 * Remove the oldest entry of the log
+	 */
+	private void dropOldest() {
+		long page = entryPage[oldest];
+		if (page != -1) {
+			index.remove(page);
+			storedBytes -= entryLength[oldest];
+			dropped++;
+		}
+		oldest = (oldest + 1) % entryPage.length;
+		count--;
+	}
+
+	/**
+	 * Mark an entry as free, its bytes are reclaimed when it becomes the
+	 * oldest
+	 */
+	private void release(int entry) {
+		index.remove(entryPage[entry]);
+		storedBytes -= entryLength[entry];
+		entryPage[entry] = -1;
+	}
+
+	/**
+	 * Print the compression ratio, the hit rate and the reads saved
+	 */
+	public void printStatistics() {
+		System.out.println("Compressed Swap : " + compressor.getName() + ", " + pool.length + " bytes, "
+				+ index.size() + " pages held in " + storedBytes + " bytes, " + stores + " pages stored, " + rejected
+				+ " incompressible, " + dropped + " dropped unused");
+		System.out.println("Compression Ratio : " + getCompressionRatio() + ", Tier Hit Rate : " + getHitRate()
+				+ ", Backing Store Reads Saved : " + hits);
+	}
+
+	/**
+	 * Uncompressed size over compressed size of the pages kept
+	 */
+	public float getCompressionRatio() {
+		return compressedTotal == 0 ? 0 : (float) uncompressedTotal / compressedTotal;
+	}
+
+	/**
+	 * Page faults served by the pool over page faults looking it up
+	 */
+	public float getHitRate() {
+		return lookups == 0 ? 0 : (float) hits / lookups;
+	}
+
+	public long getStores() {
+		return stores;
+	}
+
+	public long getRejected() {
+		return rejected;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+}
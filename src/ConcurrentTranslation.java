@@ -0,0 +1,207 @@
+/**
+ * description : This program translates the logical addresses on several threads at once.
+ * 				The trace is loaded into memory and split into as many contiguous shares as there
+ * 				are threads, each thread translating its share with a worker of a
+ * 				ConcurrentTranslationEngine: a private TLB per thread, shared page table and frames.
+ * 				The run is repeated for every thread count of the concurrent.threads system property
+ * 				(comma separated, powers of two up to the number of processors by default) and each
+ * 				run prints its throughput, its speedup over the first run and the TLB shootdown cost.
+ * 				concurrent.repeat replays every share several times to make the runs longer.
+ * 				The values read are summed into a checksum, which is the same for every thread count
+ * 				when the translations are correct.
+ */
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+public class ConcurrentTranslation {
+
+	private final AddressGeometry geometry; // Page size and address width,
+											// from the page.size and
+											// address.bits system properties
+
+	private final String FILEPATH = "./docs/";
+	private final String LOGICAL_ADDRESS_FILENAME = "addresses.txt"; // file
+																		// containing
+																		// logical
+																		// addresses
+	private final String BACKING_STORE_FILENAME = "BACKING_STORE.bin";
+
+	private final String traceFileName; // Trace given on the command line or
+										// LOGICAL_ADDRESS_FILENAME
+	private final String backingStoreFileName; // Backing store given on the
+												// command line or
+												// BACKING_STORE_FILENAME
+
+	private final int threadCounts[];
+	private final int repeat; // Times every share is translated
+
+	private long addresses[] = null; // Logical addresses of the trace
+	private int length; // Number of addresses
+	private BackingStore backingStore = null; // Backing store mapped once for
+												// all the runs
+
+	public ConcurrentTranslation() {
+		this(null, null);
+	}
+
+	/**
+	 * @param traceFileName
+	 *            : trace to translate, null for docs/addresses.txt
+	 * @param backingStoreFileName
+	 *            : backing store, null for docs/BACKING_STORE.bin
+	 */
+	public ConcurrentTranslation(String traceFileName, String backingStoreFileName) {
+		this.traceFileName = (traceFileName != null) ? traceFileName : FILEPATH + LOGICAL_ADDRESS_FILENAME;
+		this.backingStoreFileName = (backingStoreFileName != null) ? backingStoreFileName
+				: FILEPATH + BACKING_STORE_FILENAME;
+
+		geometry = AddressGeometry.fromSystemProperties();
+		threadCounts = parseInts(System.getProperty("concurrent.threads", defaultThreadCounts()));
+		repeat = Integer.getInteger("concurrent.repeat", 1);
+	}
+
+	public static void main(String[] args) {
+		new ConcurrentTranslation(args.length > 0 ? args[0] : null, args.length > 1 ? args[1] : null).init();
+	}
+
+	public void init() {
+
+		try {
+			loadTrace();
+			backingStore = new BackingStore(backingStoreFileName, geometry.getPageSize());
+
+			double baseline = 0; // throughput of the first run
+			for (int threads : threadCounts) {
+				double throughput = run(threads);
+				if (baseline == 0)
+					baseline = throughput;
+				System.out.println(String.format("Speedup : %.2f", throughput / baseline));
+				System.out.println();
+			}
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			closeBackingStore();
+		}
+	}
+
+	/**
+	 * Translate the trace on the given number of threads with a new engine
+	 *
+	 * @return translations per second
+	 */
+	private double run(int threads) throws InterruptedException {
+		final ConcurrentTranslationEngine engine = ConcurrentTranslationEngine.fromSystemProperties(geometry, threads,
+				backingStore);
+		final CountDownLatch start = new CountDownLatch(1);
+		final long checksums[] = new long[threads];
+		Thread workers[] = new Thread[threads];
+
+		for (int i = 0; i < threads; i++) {
+			final int index = i;
+			final int from = (int) ((long) length * i / threads);
+			final int to = (int) ((long) length * (i + 1) / threads);
+
+			workers[i] = new Thread(() -> {
+				ConcurrentTranslationEngine.Worker worker = engine.getWorker(index);
+				long checksum = 0;
+				try {
+					start.await();
+					for (int r = 0; r < repeat; r++) {
+						for (int j = from; j < to; j++) {
+							if (worker.translate(addresses[j]) != ConcurrentTranslationEngine.INVALID_ADDRESS)
+								checksum += worker.getValue();
+						}
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					worker.finish();
+				}
+				checksums[index] = checksum;
+			}, "translation-worker-" + i);
+			workers[i].start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers)
+			worker.join();
+		long elapsed = System.nanoTime() - begin;
+
+		long translations = 0;
+		long checksum = 0;
+		for (int i = 0; i < threads; i++) {
+			translations += engine.getWorker(i).getTranslations();
+			checksum += checksums[i];
+		}
+		double throughput = translations / (elapsed / 1e9);
+
+		System.out.println("Threads : " + threads + ", " + engine.getFrames() + " frames in " + engine.getStripes()
+				+ " stripes");
+		System.out.println(String.format("Throughput : %d translations in %d ms, %.0f translations/s", translations,
+				elapsed / 1000000, throughput));
+		engine.printStatistics();
+		System.out.println("Checksum of values read : " + checksum);
+
+		return throughput;
+	}
+
+	/**
+	 * Read the whole trace into memory so that the threads do not share a
+	 * reader
+	 */
+	private void loadTrace() throws IOException {
+		addresses = new long[1 << 16];
+		length = 0;
+
+		try (TraceReader trace = new TraceReader(traceFileName)) {
+			while (trace.next()) {
+				if (length == addresses.length)
+					addresses = Arrays.copyOf(addresses, 2 * length);
+				addresses[length++] = trace.address();
+			}
+		}
+	}
+
+	/**
+	 * Powers of two up to the number of processors, followed by the number of
+	 * processors when it is not a power of two
+	 */
+	private static String defaultThreadCounts() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		StringBuilder counts = new StringBuilder("1");
+		for (int threads = 2; threads <= processors; threads *= 2)
+			counts.append(',').append(threads);
+		if (Integer.bitCount(processors) != 1)
+			counts.append(',').append(processors);
+		return counts.toString();
+	}
+
+	private static int[] parseInts(String list) {
+		String items[] = list.split(",");
+		int values[] = new int[items.length];
+		for (int i = 0; i < items.length; i++)
+			values[i] = Integer.parseInt(items[i].trim());
+		return values;
+	}
+
+	private void closeBackingStore() {
+		if (backingStore != null) {
+			try {
+				backingStore.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
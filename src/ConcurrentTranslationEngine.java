@@ -0,0 +1,441 @@
+/**
+ * description : Translation of logical addresses by several worker threads sharing one physical memory.
+ * 				Every worker stands for a CPU: it has a private TLB and translates its own addresses,
+ * 				while the page table and the frames are shared. The page table is an array of atomic
+ * 				entries read without locks. The frames are split into stripes, each with its own lock
+ * 				and CLOCK hand, and a page is always loaded into the stripe its number hashes to, so
+ * 				page faults on different stripes are handled in parallel. Translations only set the
+ * 				reference bit of their frame, which is what the CLOCK hand looks at.
+ * 				Evicting a page is done like an operating system does it: the page is unmapped, a TLB
+ * 				shootdown is sent to every other worker and the frame is only reused once all of them
+ * 				have acknowledged it. A worker acknowledges shootdowns between two translations, and
+ * 				while it waits for a lock or for acknowledgements itself, so it never uses a frame
+ * 				after acknowledging its eviction and two workers evicting at once cannot deadlock.
+ * 				The backing store is read only, writes are translated like reads.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentTranslationEngine {
+
+	public static final long INVALID_ADDRESS = TranslationEngine.INVALID_ADDRESS;
+
+	private final AddressGeometry geometry;
+	private final int SIZE; // Size of page and frame
+	private final int frames;
+
+	private final BackingStore backingStore;
+
+	private final byte physicalMemory[];
+	private final AtomicIntegerArray pageFrames; // Page table: frame + 1 of
+													// every page, 0 when the
+													// page is not in memory
+	private final long framePage[]; // Page held by each frame, guarded by the
+									// lock of the stripe of the frame
+	private final AtomicIntegerArray referenced; // Reference bit of each
+													// frame
+	private final Stripe stripes[];
+
+	// Shootdown requests, request s being in slot s & shootdownMask once its
+	// stamp is s. A request waits for all workers before the next request of
+	// the same worker, so at most one request per worker is outstanding and
+	// a slot is never reused before every worker has read it
+	private final AtomicLong shootdownSequence = new AtomicLong();
+	private final AtomicLongArray shootdownStamps;
+	private final long shootdownPages[];
+	private final int shootdownRequesters[];
+	private final int shootdownMask;
+
+	private final Worker workers[];
+
+	/**
+	 * Frames of one stripe, allocated in order and then replaced by a CLOCK
+	 * hand
+	 */
+	private static class Stripe {
+
+		final ReentrantLock lock = new ReentrantLock();
+		final int first; // first frame of the stripe
+		final int count; // number of frames
+		int used; // frames allocated so far
+		int hand; // next frame looked at by the CLOCK hand
+
+		Stripe(int first, int count) {
+			this.first = first;
+			this.count = count;
+		}
+	}
+
+	/**
+	 * @param geometry
+	 *            : page size and address width
+	 * @param frames
+	 *            : number of frames of physical memory
+	 * @param stripeCount
+	 *            : number of stripes the frames are split into, at most frames
+	 * @param workerCount
+	 *            : number of workers, each with a TLB given by the system
+	 *            properties
+	 * @param backingStore
+	 *            : read only store holding the pages
+	 */
+	public ConcurrentTranslationEngine(AddressGeometry geometry, int frames, int stripeCount, int workerCount,
+			BackingStore backingStore) {
+		if (backingStore.getPageSize() != geometry.getPageSize())
+			throw new IllegalArgumentException("Backing store pages of " + backingStore.getPageSize()
+					+ " bytes do not match pages of " + geometry.getPageSize() + " bytes");
+		if (frames <= 0 || (long) frames * geometry.getPageSize() > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Invalid frame count " + frames);
+		if (geometry.getPageCount() > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException(
+					"Address space of " + geometry.getPageCount() + " pages is too large for a shared page table");
+		if (stripeCount <= 0 || stripeCount > frames)
+			throw new IllegalArgumentException("Invalid stripe count " + stripeCount + " for " + frames + " frames");
+		if (workerCount <= 0)
+			throw new IllegalArgumentException("Invalid worker count " + workerCount);
+
+		this.geometry = geometry;
+		this.SIZE = geometry.getPageSize();
+		this.frames = frames;
+		this.backingStore = backingStore;
+
+		physicalMemory = new byte[frames * SIZE];
+		pageFrames = new AtomicIntegerArray((int) geometry.getPageCount());
+		framePage = new long[frames];
+		referenced = new AtomicIntegerArray(frames);
+
+		stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			int first = (int) ((long) frames * i / stripeCount);
+			int next = (int) ((long) frames * (i + 1) / stripeCount);
+			stripes[i] = new Stripe(first, next - first);
+		}
+
+		int slots = Integer.highestOneBit(workerCount) << 1;
+		shootdownStamps = new AtomicLongArray(slots);
+		shootdownPages = new long[slots];
+		shootdownRequesters = new int[slots];
+		shootdownMask = slots - 1;
+
+		workers = new Worker[workerCount];
+		for (int i = 0; i < workerCount; i++)
+			workers[i] = new Worker(i, TranslationLookasideBuffer.fromSystemProperties());
+	}
+
+	/**
+	 * Engine with the frames and stripes given by the frames and
+	 * concurrent.stripes system properties
+	 */
+	public static ConcurrentTranslationEngine fromSystemProperties(AddressGeometry geometry, int workerCount,
+			BackingStore backingStore) {
+		int frames = Integer.getInteger("frames", 128);
+		int stripeCount = Math.min(frames, Integer.getInteger("concurrent.stripes", 16));
+
+		return new ConcurrentTranslationEngine(geometry, frames, stripeCount, workerCount, backingStore);
+	}
+
+	public Worker getWorker(int index) {
+		return workers[index];
+	}
+
+	public int getWorkerCount() {
+		return workers.length;
+	}
+
+	/**
+	 * Stripe of a page, from a hash of the page number so that neighbouring
+	 * pages go to different stripes
+	 */
+	private int stripeOf(long page) {
+		return (int) (((page * 0x9E3779B97F4A7C15L) >>> 32) % stripes.length);
+	}
+
+	/**
+	 * Next frame of the stripe whose reference bit is clear, clearing the bits
+	 * it passes. Workers keep setting bits while the hand turns, so after two
+	 * turns the frame under the hand is taken whatever its bit
+	 */
+	private int clockVictim(Stripe stripe) {
+		for (int step = 0;; step++) {
+			int frame = stripe.first + stripe.hand;
+			stripe.hand = (stripe.hand + 1) % stripe.count;
+
+			if (referenced.get(frame) == 0 || step >= 2 * stripe.count)
+				return frame;
+			referenced.lazySet(frame, 0);
+		}
+	}
+
+	/**
+	 * Print the rates and the shootdown cost summed over the workers
+	 */
+	public void printStatistics() {
+		long translations = 0, TLBHits = 0, pageTableHits = 0, pageFaults = 0, sharedFaults = 0;
+		long invalidAddresses = 0, evictions = 0, shootdownNanos = 0, received = 0, invalidated = 0;
+		for (Worker worker : workers) {
+			translations += worker.translations;
+			TLBHits += worker.TLBHits;
+			pageTableHits += worker.pageTableHits;
+			pageFaults += worker.pageFaults;
+			sharedFaults += worker.sharedFaults;
+			invalidAddresses += worker.invalidAddresses;
+			evictions += worker.evictions;
+			shootdownNanos += worker.shootdownNanos;
+			received += worker.shootdownsReceived;
+			invalidated += worker.entriesInvalidated;
+		}
+
+		System.out.println("Page Fault Rate : " + (float) pageFaults / translations);
+		System.out.println("TLB Hit Rate : " + (float) TLBHits / translations);
+		System.out.println("Page Table Hit Rate : " + (float) pageTableHits / (translations - TLBHits));
+		if (sharedFaults > 0)
+			System.out.println("Page faults resolved by another worker : " + sharedFaults);
+		if (invalidAddresses > 0)
+			System.out.println("Addresses outside the address space : " + invalidAddresses);
+		System.out.println("TLB Shootdowns : " + evictions + ", " + received + " received by other workers, "
+				+ invalidated + " TLB entries invalidated");
+		System.out.println("Shootdown Cost : " + (evictions == 0 ? 0 : shootdownNanos / evictions) + " ns per shootdown, "
+				+ shootdownNanos / 1000000 + " ms waiting for acknowledgements");
+	}
+
+	/**
+	 * One CPU of the engine. A worker must always be used by the same thread
+	 * and be finished when its thread has no more addresses to translate
+	 */
+	public class Worker {
+
+		private final int index;
+		private final TranslationLookasideBuffer TLB;
+		private final ByteBuffer storeViews[]; // Views of the backing store
+												// of this worker
+
+		private volatile boolean online = true; // false once finished
+		private volatile long acknowledged; // last shootdown request
+											// handled
+		private long seen; // last shootdown request read, written by the
+							// worker only
+
+		private int value; // Value read by the last translation
+
+		// Statistics, read once the worker is finished
+		private long translations;
+		private long TLBHits;
+		private long pageTableHits;
+		private long pageFaults;
+		private long sharedFaults; // Faults on a page another worker was
+									// loading
+		private long invalidAddresses;
+		private long evictions; // Evictions, each sending one shootdown
+		private long shootdownNanos; // Time spent waiting for
+										// acknowledgements
+		private long shootdownsReceived; // Requests of other workers handled
+		private long entriesInvalidated; // Requests that found the page in
+											// the TLB
+
+		private Worker(int index, TranslationLookasideBuffer TLB) {
+			this.index = index;
+			this.TLB = TLB; // allocated with the worker, which keeps the
+							// counters of two workers off the same cache line
+			this.storeViews = backingStore.newViews();
+		}
+
+		/**
+		 * Translate a logical address and read the value at the address
+		 *
+		 * @return physical address, INVALID_ADDRESS if the logical address is
+		 *         outside the address space
+		 */
+		public long translate(long logicalAddress) throws IOException {
+			serviceShootdowns();
+
+			if (!geometry.contains(logicalAddress)) {
+				invalidAddresses++;
+				return INVALID_ADDRESS;
+			}
+
+			long pageNumber = geometry.pageNumber(logicalAddress);
+			int offset = geometry.offset(logicalAddress);
+
+			int frameNumber = TLB.lookup(pageNumber);
+
+			if (frameNumber != -1) { // TLB hit
+				TLBHits++;
+			} else if ((frameNumber = pageFrames.get((int) pageNumber) - 1) != -1) {
+				// Page table hit, the walk fills the TLB
+				pageTableHits++;
+				TLB.insert(pageNumber, frameNumber);
+			} else { // Page fault
+				pageFaults++;
+				frameNumber = handlePageFault(pageNumber);
+				TLB.insert(pageNumber, frameNumber);
+			}
+
+			if (referenced.get(frameNumber) == 0) // only write the shared bit
+													// when it changes
+				referenced.lazySet(frameNumber, 1);
+
+			translations++;
+
+			int physicalAddress = frameNumber * SIZE + offset;
+			value = physicalMemory[physicalAddress];
+
+			return physicalAddress;
+		}
+
+		/**
+		 * Value read by the last translation, as a signed byte
+		 */
+		public int getValue() {
+			return value;
+		}
+
+		/**
+		 * Stop taking part in shootdowns, called by the thread of the worker
+		 * after its last translation
+		 */
+		public void finish() {
+			online = false;
+		}
+
+		/**
+		 * Load the page into a frame of its stripe, unless another worker
+		 * loaded it while this worker waited for the lock
+		 *
+		 * @return frame holding the page
+		 */
+		private int handlePageFault(long pageNumber) throws IOException {
+			Stripe stripe = stripes[stripeOf(pageNumber)];
+
+			while (!stripe.lock.tryLock()) {
+				serviceShootdowns(); // the holder may be waiting for this
+										// worker
+				Thread.yield();
+			}
+			try {
+				int loaded = pageFrames.get((int) pageNumber) - 1;
+				if (loaded != -1) {
+					sharedFaults++;
+					return loaded;
+				}
+
+				int frameNumber;
+				if (stripe.used < stripe.count) {
+					frameNumber = stripe.first + stripe.used++;
+				} else {
+					frameNumber = clockVictim(stripe);
+					long victimPage = framePage[frameNumber];
+
+					pageFrames.set((int) victimPage, 0); // unmap the victim
+					TLB.invalidate(victimPage);
+					shootdown(victimPage); // no other worker uses the frame
+											// after this
+					evictions++;
+				}
+
+				backingStore.readPage(pageNumber, physicalMemory, frameNumber * SIZE, storeViews);
+				framePage[frameNumber] = pageNumber;
+				referenced.lazySet(frameNumber, 1);
+				pageFrames.set((int) pageNumber, frameNumber + 1); // publish
+																	// the page
+																	// after its
+																	// content
+				return frameNumber;
+			} finally {
+				stripe.lock.unlock();
+			}
+		}
+
+		/**
+		 * Ask every other worker to drop the page from its TLB and wait until
+		 * all workers still running have done so
+		 */
+		private void shootdown(long page) {
+			long start = System.nanoTime();
+
+			long sequence = shootdownSequence.incrementAndGet();
+			int slot = (int) (sequence & shootdownMask);
+			shootdownPages[slot] = page;
+			shootdownRequesters[slot] = index;
+			shootdownStamps.set(slot, sequence); // publish the request
+
+			for (Worker worker : workers) {
+				if (worker == this)
+					continue;
+				while (worker.online && worker.acknowledged < sequence) {
+					serviceShootdowns(); // the worker may be waiting for this
+											// one
+					Thread.yield();
+				}
+			}
+
+			shootdownNanos += System.nanoTime() - start;
+		}
+
+		/**
+		 * Handle the shootdown requests sent since the last call and
+		 * acknowledge them. Called only when the worker holds no translation
+		 */
+		private void serviceShootdowns() {
+			long published = shootdownSequence.get();
+			if (seen == published)
+				return;
+
+			while (seen < published) {
+				long sequence = seen + 1;
+				int slot = (int) (sequence & shootdownMask);
+				while (shootdownStamps.get(slot) != sequence)
+					Thread.yield(); // the request is being written
+
+				if (shootdownRequesters[slot] != index) {
+					shootdownsReceived++;
+					if (TLB.invalidate(shootdownPages[slot]))
+						entriesInvalidated++;
+				}
+				seen = sequence;
+			}
+
+			acknowledged = seen;
+		}
+
+		public TranslationLookasideBuffer getTLB() {
+			return TLB;
+		}
+
+		public long getTranslations() {
+			return translations;
+		}
+
+		public long getTLBHits() {
+			return TLBHits;
+		}
+
+		public long getPageFaults() {
+			return pageFaults;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public long getShootdownNanos() {
+			return shootdownNanos;
+		}
+	}
+
+	public AddressGeometry getGeometry() {
+		return geometry;
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	public int getStripes() {
+		return stripes.length;
+	}
+}
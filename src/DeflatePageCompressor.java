@@ -0,0 +1,41 @@
+/**
+ * description : Page codec built on Deflater at its fastest level, without the zlib header and
+ * 				checksum. The Deflater and Inflater are created once and reset for every page.
+ */
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class DeflatePageCompressor implements PageCompressor {
+
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+	private final Inflater inflater = new Inflater(true);
+
+	@Override
+	public int compress(byte src[], int offset, int len, byte dst[]) {
+		deflater.reset();
+		deflater.setInput(src, offset, len);
+		deflater.finish();
+		int length = deflater.deflate(dst, 0, dst.length);
+		return deflater.finished() ? length : -1;
+	}
+
+	@Override
+	public int decompress(byte src[], int offset, int len, byte dst[], int dstOffset, int length)
+			throws IOException {
+		inflater.reset();
+		inflater.setInput(src, offset, len);
+		try {
+			return inflater.inflate(dst, dstOffset, length);
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt compressed page", e);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "deflate";
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * description : First in first out replacement.
+ * 				Frames are queued in the order their pages were loaded and the oldest one is
+ * 				replaced, references do not change the order.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class FIFOReplacement implements ReplacementPolicy {
+
+	private final FrameList queue;
+
+	public FIFOReplacement(int frames) {
+		queue = new FrameList(frames);
+	}
+
+	@Override
+	public void touch(int frame) {
+	}
+
+	@Override
+	public void admit(int frame, long page) {
+		queue.addFirst(frame);
+	}
+
+	@Override
+	public int victim(long page) {
+		return queue.removeLast();
+	}
+
+	@Override
+	public void remove(int frame) {
+		queue.remove(frame);
+	}
+
+	@Override
+	public String getName() {
+		return "FIFO";
+	}
+
+	@Override
+	public void save(DataOutput out) throws IOException {
+		queue.save(out);
+	}
+
+	@Override
+	public void restore(DataInput in) throws IOException {
+		queue.restore(in);
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * description : Page table with one entry per virtual page, the layout the translators
+ * 				started with. Lookups are a single array read.
+ */
+
+public class FlatPageTable implements PageTable {
+
+	private static final long MAX_PAGES = 1L << 28;
+
+	private final int frames[];
+	private long walkReferences;
+
+	public FlatPageTable(long pages) {
+		if (pages > MAX_PAGES)
+			throw new IllegalArgumentException(
+					"A flat page table of " + pages + " pages is too large, use the radix or inverted table");
+
+		frames = new int[(int) pages];
+		for (int i = 0; i < frames.length; i++)
+			frames[i] = -1;
+	}
+
+	@Override
+	public int lookup(long page) {
+		walkReferences++;
+		return frames[(int) page];
+	}
+
+	@Override
+	public boolean contains(long page) {
+		return frames[(int) page] != -1;
+	}
+
+	@Override
+	public void map(long page, int frame) {
+		frames[(int) page] = frame;
+	}
+
+	@Override
+	public void unmap(long page) {
+		frames[(int) page] = -1;
+	}
+
+	@Override
+	public long getWalkReferences() {
+		return walkReferences;
+	}
+
+	@Override
+	public long getTableBytes() {
+		return 4L * frames.length;
+	}
+
+	@Override
+	public String getName() {
+		return "flat";
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * description : Intrusive doubly linked list over integer nodes, normally frame numbers.
+ * 				The links live in prev[] and next[] arrays that can be shared by several lists,
+ * 				as long as a node belongs to at most one of them at a time. Every operation is
+ * 				constant time and nothing is allocated after construction.
+ * 				The head of the list is the most recently added node, the tail the oldest one.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class FrameList {
+
+	private final int prev[];
+	private final int next[];
+
+	private int head;
+	private int tail;
+	private int size;
+
+	/**
+	 * Create a list with its own links for nodes 0 to capacity - 1
+	 */
+	public FrameList(int capacity) {
+		this(new int[capacity], new int[capacity]);
+	}
+
+	/**
+	 * Create a list using the given link arrays, which may be shared with other
+	 * lists over the same nodes
+	 */
+	public FrameList(int prev[], int next[]) {
+		this.prev = prev;
+		this.next = next;
+		head = -1;
+		tail = -1;
+		size = 0;
+	}
+
+	/**
+	 * Insert the node at the head of the list
+	 */
+	public void addFirst(int node) {
+		prev[node] = -1;
+		next[node] = head;
+		if (head != -1)
+			prev[head] = node;
+		else
+			tail = node;
+		head = node;
+		size++;
+	}
+
+	/**
+	 * Unlink the node from the list, the node must be in this list
+	 */
+	public void remove(int node) {
+		int p = prev[node];
+		int n = next[node];
+
+		if (p != -1)
+			next[p] = n;
+		else
+			head = n;
+
+		if (n != -1)
+			prev[n] = p;
+		else
+			tail = p;
+
+		size--;
+	}
+
+	/**
+	 * Move a node of this list to its head
+	 */
+	public void moveToFront(int node) {
+		if (node != head) {
+			remove(node);
+			addFirst(node);
+		}
+	}
+
+	/**
+	 * Unlink and return the tail of the list, -1 if the list is empty
+	 */
+	public int removeLast() {
+		int node = tail;
+		if (node != -1)
+			remove(node);
+		return node;
+	}
+
+	public int first() {
+		return head;
+	}
+
+	public int last() {
+		return tail;
+	}
+
+	/**
+	 * Node following the given node towards the tail, -1 at the tail
+	 */
+	public int next(int node) {
+		return next[node];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		head = -1;
+		tail = -1;
+		size = 0;
+	}
+
+	/**
+	 * Write the nodes from the head to the tail
+	 */
+	public void save(DataOutput out) throws IOException {
+		out.writeInt(size);
+		for (int node = head; node != -1; node = next[node])
+			out.writeInt(node);
+	}
+
+	/**
+	 * Replace the content of the list with the nodes written by save(). The
+	 * nodes must not belong to another list sharing the links
+	 */
+	public void restore(DataInput in) throws IOException {
+		int nodes[] = new int[in.readInt()];
+		for (int i = 0; i < nodes.length; i++)
+			nodes[i] = in.readInt();
+
+		clear();
+		for (int i = nodes.length - 1; i >= 0; i--)
+			addFirst(nodes[i]);
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * description : Bounded history of page numbers recently evicted from memory.
+ * 				The adaptive policies (ARC and 2Q) remember the pages they evicted to recognise
+ * 				a page coming back. Ghost entries hold only the page number, are looked up through
+ * 				a LongIntHashMap and are kept in FrameList order, oldest at the tail. Several
+ * 				ghost lists can share one pool of entries.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class GhostList {
+
+	/**
+	 * Entries shared by the ghost lists of one policy
+	 */
+	public static class Pool {
+
+		private final long pages[];
+		private final int prev[];
+		private final int next[];
+		private final GhostList owner[];
+		private final LongIntHashMap index;
+		private int free; // first unused entry, chained through next[]
+
+		public Pool(int capacity) {
+			pages = new long[capacity];
+			prev = new int[capacity];
+			next = new int[capacity];
+			owner = new GhostList[capacity];
+			index = new LongIntHashMap(capacity);
+
+			for (int i = 0; i < capacity; i++)
+				next[i] = (i + 1 < capacity) ? i + 1 : -1;
+			free = (capacity > 0) ? 0 : -1;
+		}
+
+		/**
+		 * @return ghost list remembering the page, null if the page is not
+		 *         remembered
+		 */
+		public GhostList find(long page) {
+			int entry = index.get(page);
+			return entry == LongIntHashMap.MISSING ? null : owner[entry];
+		}
+
+		public boolean isFull() {
+			return free == -1;
+		}
+	}
+
+	private final Pool pool;
+	private final FrameList order;
+
+	public GhostList(Pool pool) {
+		this.pool = pool;
+		this.order = new FrameList(pool.prev, pool.next);
+	}
+
+	/**
+	 * Remember the page as the newest entry. The pool must not be full
+	 */
+	public void add(long page) {
+		int entry = pool.free;
+		pool.free = pool.next[entry];
+
+		pool.pages[entry] = page;
+		pool.owner[entry] = this;
+		pool.index.put(page, entry);
+		order.addFirst(entry);
+	}
+
+	/**
+	 * Forget the page, which must belong to this list
+	 */
+	public void remove(long page) {
+		int entry = pool.index.remove(page);
+		order.remove(entry);
+		release(entry);
+	}
+
+	/**
+	 * Forget the oldest page of the list
+	 */
+	public void removeLast() {
+		int entry = order.removeLast();
+		if (entry != -1) {
+			pool.index.remove(pool.pages[entry]);
+			release(entry);
+		}
+	}
+
+	public int size() {
+		return order.size();
+	}
+
+	/**
+	 * Write the remembered pages from the newest to the oldest
+	 */
+	public void save(DataOutput out) throws IOException {
+		out.writeInt(order.size());
+		for (int entry = order.first(); entry != -1; entry = order.next(entry))
+			out.writeLong(pool.pages[entry]);
+	}
+
+	/**
+	 * Replace the remembered pages with the pages written by save()
+	 */
+	public void restore(DataInput in) throws IOException {
+		long pages[] = new long[in.readInt()];
+		for (int i = 0; i < pages.length; i++)
+			pages[i] = in.readLong();
+
+		while (order.size() > 0)
+			removeLast();
+		for (int i = pages.length - 1; i >= 0; i--)
+			add(pages[i]);
+	}
+
+	private void release(int entry) {
+		pool.owner[entry] = null;
+		pool.next[entry] = pool.free;
+		pool.free = entry;
+	}
+}
@@ -0,0 +1,324 @@
+/**
+ * description : Huge pages built from reservations of aligned blocks of frames.
+ * 				Physical memory is split into blocks of as many frames as a huge page holds base
+ * 				pages. The first page fault in a region of the address space the size of a huge page
+ * 				reserves a free block for the region, and every page of the region is then loaded
+ * 				into its own slot of the block, so the block holds the region contiguously.
+ * 				Once all the pages of the region are resident the region is promoted: one TLB entry
+ * 				maps it whole and a TLB miss inside it is resolved here, one level above the page
+ * 				table. Evicting any page of a promoted region demotes it back to base pages, and it is
+ * 				promoted again when the page comes back.
+ * 				The free slots of reserved blocks can only receive the pages of their region; they
+ * 				are the internal fragmentation of huge pages. When a page needs a frame and no other
+ * 				frame is free, the reservation with the most free slots is broken before any page is
+ * 				evicted, and its free slots go to other regions.
+ */
+
+public class HugePages {
+
+	private final int basePages; // Base pages in a huge page, a power of two
+	private final int shift; // log2 of basePages
+	private final int blocks; // Whole blocks of physical memory, the frames
+								// after the last block are ordinary frames
+
+	private final LongIntHashMap reservations = new LongIntHashMap(); // Block
+																		// reserved
+																		// for
+																		// each
+																		// region
+	private final long blockRegion[]; // Region reserved in each block, -1 if
+										// none
+	private final int blockUsed[]; // Frames of each block holding a page
+	private final boolean blockPromoted[];
+	private final boolean frameUsed[];
+
+	// Free blocks and free frames outside reservations, kept as stacks that
+	// may hold entries which are no longer free; they are checked when popped
+	private final int freeBlocks[];
+	private int freeBlockCount;
+	private final boolean blockQueued[];
+	private final int freeFrames[];
+	private int freeFrameCount;
+	private final boolean frameQueued[];
+
+	private int holes; // Free frames of reserved blocks
+
+	// Statistics
+	private long reservationsMade;
+	private long reservationsBroken;
+	private long promotions;
+	private long demotions;
+
+	/**
+	 * @param basePages
+	 *            : base pages in a huge page, a power of two
+	 * @param frames
+	 *            : number of frames of physical memory
+	 */
+	public HugePages(int basePages, int frames) {
+		if (basePages < 2 || (basePages & (basePages - 1)) != 0)
+			throw new IllegalArgumentException("Huge pages of " + basePages + " base pages, must be a power of two");
+
+		this.basePages = basePages;
+		this.shift = Integer.numberOfTrailingZeros(basePages);
+		this.blocks = frames / basePages;
+
+		blockRegion = new long[blocks];
+		blockUsed = new int[blocks];
+		blockPromoted = new boolean[blocks];
+		frameUsed = new boolean[frames];
+
+		freeBlocks = new int[blocks];
+		blockQueued = new boolean[blocks];
+		for (int block = blocks - 1; block >= 0; block--) {
+			blockRegion[block] = -1;
+			pushFreeBlock(block);
+		}
+
+		freeFrames = new int[frames];
+		frameQueued = new boolean[frames];
+		for (int frame = frames - 1; frame >= blocks * basePages; frame--)
+			pushFreeFrame(frame);
+	}
+
+	/**
+	 * Create the huge pages asked for by the hugepage.pages system property
+	 *
+	 * @return null when the property is not set or is 0
+	 */
+	public static HugePages fromSystemProperties(int frames) {
+		int basePages = Integer.getInteger("hugepage.pages", 0);
+		return basePages > 0 ? new HugePages(basePages, frames) : null;
+	}
+
+	/**
+	 * Huge page number of a base page
+	 */
+	public long regionOf(long page) {
+		return page >>> shift;
+	}
+
+	/**
+	 * First frame of the region of a page, when the region is promoted
+	 *
+	 * @return frame of the first page of the region, -1 if the region is not
+	 *         promoted
+	 */
+	public int firstFrame(long page) {
+		int block = reservations.get(page >>> shift);
+		if (block == LongIntHashMap.MISSING || !blockPromoted[block])
+			return -1;
+		return block * basePages;
+	}
+
+	/**
+	 * Frame of a page of a promoted region, given the first frame of the
+	 * region
+	 */
+	public int frameOf(int firstFrame, long page) {
+		return firstFrame + (int) (page & (basePages - 1));
+	}
+
+	/**
+	 * Find a free frame for a page being loaded: its slot in the block of its
+	 * region, a newly reserved block, a free frame outside the reservations,
+	 * or a free slot of a broken reservation
+	 *
+	 * @return frame that will hold the page, -1 if every frame holds a page
+	 *         and one has to be evicted
+	 */
+	public int allocate(long page) {
+		long region = page >>> shift;
+		int slot = (int) (page & (basePages - 1));
+
+		int block = reservations.get(region);
+		if (block == LongIntHashMap.MISSING && (block = popFreeBlock()) != -1) {
+			reservations.put(region, block);
+			blockRegion[block] = region;
+			holes += basePages;
+			reservationsMade++;
+		}
+		if (block != -1) {
+			holes--;
+			return take(block * basePages + slot);
+		}
+
+		int frame = popFreeFrame();
+		if (frame == -1 && holes > 0) {
+			breakReservation();
+			frame = popFreeFrame();
+		}
+		return frame == -1 ? -1 : take(frame);
+	}
+
+	/**
+	 * The page has been loaded and mapped. If it completes its region, the
+	 * region is promoted
+	 *
+	 * @return first frame of the region when it has just been promoted, -1
+	 *         otherwise
+	 */
+	public int promote(long page) {
+		int block = reservations.get(page >>> shift);
+		if (block == LongIntHashMap.MISSING || blockPromoted[block] || blockUsed[block] < basePages)
+			return -1;
+
+		blockPromoted[block] = true;
+		promotions++;
+		return block * basePages;
+	}
+
+	/**
+	 * A page has been evicted from its frame, which becomes free. A promoted
+	 * region losing a page is demoted
+	 *
+	 * @return huge page number of the demoted region, -1 if no region was
+	 *         demoted
+	 */
+	public long release(int frame) {
+		frameUsed[frame] = false;
+		int block = frame >>> shift;
+
+		if (block >= blocks) {
+			pushFreeFrame(frame);
+			return -1;
+		}
+
+		blockUsed[block]--;
+		long region = blockRegion[block];
+		if (region == -1) {
+			if (blockUsed[block] == 0)
+				pushFreeBlock(block);
+			else
+				pushFreeFrame(frame);
+			return -1;
+		}
+
+		long demoted = -1;
+		if (blockPromoted[block]) {
+			blockPromoted[block] = false;
+			demotions++;
+			demoted = region;
+		}
+		holes++;
+		if (blockUsed[block] == 0) { // nothing left of the region
+			unreserve(block);
+			pushFreeBlock(block);
+		}
+		return demoted;
+	}
+
+	/**
+	 * Break the reservation with the most free slots, which go to the free
+	 * frames. Only called when every frame outside the reservations is used,
+	 * so the blocks are scanned
+	 */
+	private void breakReservation() {
+		int victim = -1;
+		for (int block = 0; block < blocks; block++) {
+			if (blockRegion[block] != -1 && (victim == -1 || blockUsed[block] < blockUsed[victim]))
+				victim = block;
+		}
+
+		unreserve(victim);
+		reservationsBroken++;
+		for (int frame = victim * basePages; frame < (victim + 1) * basePages; frame++) {
+			if (!frameUsed[frame])
+				pushFreeFrame(frame);
+		}
+	}
+
+	private void unreserve(int block) {
+		reservations.remove(blockRegion[block]);
+		blockRegion[block] = -1;
+		blockPromoted[block] = false;
+		holes -= basePages - blockUsed[block];
+	}
+
+	private int take(int frame) {
+		frameUsed[frame] = true;
+		if ((frame >>> shift) < blocks)
+			blockUsed[frame >>> shift]++;
+		return frame;
+	}
+
+	private void pushFreeBlock(int block) {
+		if (!blockQueued[block]) {
+			blockQueued[block] = true;
+			freeBlocks[freeBlockCount++] = block;
+		}
+	}
+
+	/**
+	 * @return a block with no used frame and no reservation, -1 if none
+	 */
+	private int popFreeBlock() {
+		while (freeBlockCount > 0) {
+			int block = freeBlocks[--freeBlockCount];
+			blockQueued[block] = false;
+			if (blockUsed[block] == 0 && blockRegion[block] == -1)
+				return block;
+		}
+		return -1;
+	}
+
+	private void pushFreeFrame(int frame) {
+		if (!frameQueued[frame]) {
+			frameQueued[frame] = true;
+			freeFrames[freeFrameCount++] = frame;
+		}
+	}
+
+	/**
+	 * @return a free frame outside the reservations, -1 if none
+	 */
+	private int popFreeFrame() {
+		while (freeFrameCount > 0) {
+			int frame = freeFrames[--freeFrameCount];
+			frameQueued[frame] = false;
+			int block = frame >>> shift;
+			if (!frameUsed[frame] && (block >= blocks || blockRegion[block] == -1))
+				return frame;
+		}
+		return -1;
+	}
+
+	public int getBasePages() {
+		return basePages;
+	}
+
+	/**
+	 * Free frames of reserved blocks, the current internal fragmentation
+	 */
+	public int getHoles() {
+		return holes;
+	}
+
+	/**
+	 * Regions currently promoted
+	 */
+	public int getPromoted() {
+		int promoted = 0;
+		for (int block = 0; block < blocks; block++) {
+			if (blockPromoted[block])
+				promoted++;
+		}
+		return promoted;
+	}
+
+	public long getReservationsMade() {
+		return reservationsMade;
+	}
+
+	public long getReservationsBroken() {
+		return reservationsBroken;
+	}
+
+	public long getPromotions() {
+		return promotions;
+	}
+
+	public long getDemotions() {
+		return demotions;
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * description : Inverted page table with one entry per frame.
+ * 				Each frame records the page it holds, and the frames are chained from a hash
+ * 				anchor table indexed by the hash of the page number. The table size depends only
+ * 				on the number of frames, whatever the size of the virtual address space.
+ */
+
+public class InvertedPageTable implements PageTable {
+
+	private final long framePage[]; // page held by each frame
+	private final int next[]; // next frame of the same hash chain, -1 at the
+								// end
+	private final int anchor[]; // first frame of each hash chain, -1 if empty
+	private final int mask;
+	private long walkReferences;
+
+	public InvertedPageTable(int frames) {
+		framePage = new long[frames];
+		next = new int[frames];
+
+		int buckets = Integer.highestOneBit(Math.max(2, frames) * 2 - 1) << 1;
+		anchor = new int[buckets];
+		mask = buckets - 1;
+		for (int i = 0; i < buckets; i++)
+			anchor[i] = -1;
+	}
+
+	@Override
+	public int lookup(long page) {
+		walkReferences++; // the anchor entry
+		for (int frame = anchor[hash(page)]; frame != -1; frame = next[frame]) {
+			walkReferences++;
+			if (framePage[frame] == page)
+				return frame;
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean contains(long page) {
+		for (int frame = anchor[hash(page)]; frame != -1; frame = next[frame]) {
+			if (framePage[frame] == page)
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void map(long page, int frame) {
+		int bucket = hash(page);
+		framePage[frame] = page;
+		next[frame] = anchor[bucket];
+		anchor[bucket] = frame;
+	}
+
+	@Override
+	public void unmap(long page) {
+		int bucket = hash(page);
+		int previous = -1;
+
+		for (int frame = anchor[bucket]; frame != -1; frame = next[frame]) {
+			if (framePage[frame] == page) {
+				if (previous == -1)
+					anchor[bucket] = next[frame];
+				else
+					next[previous] = next[frame];
+				return;
+			}
+			previous = frame;
+		}
+	}
+
+	@Override
+	public long getWalkReferences() {
+		return walkReferences;
+	}
+
+	@Override
+	public long getTableBytes() {
+		return 12L * framePage.length + 4L * anchor.length;
+	}
+
+	@Override
+	public String getName() {
+		return "inverted";
+	}
+
+	private int hash(long page) {
+		page *= 0x9E3779B97F4A7C15L;
+		return (int) (page >>> 32) & mask;
+	}
+}
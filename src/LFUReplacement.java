@@ -0,0 +1,221 @@
+/**
+ * description : Least frequently used replacement in constant time.
+ * 				Frames with the same reference count are kept in one intrusive list, and the
+ * 				lists themselves form a list of count groups ordered by increasing count. A
+ * 				reference moves the frame into the group with the next count, creating that
+ * 				group next to the current one if needed, and the victim is the oldest frame of
+ * 				the first group. Ties between equally used frames are broken by age.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class LFUReplacement implements ReplacementPolicy {
+
+	// Frames, linked inside their count group
+	private final int framePrev[];
+	private final int frameNext[];
+	private final int frameGroup[]; // group holding the frame, -1 if not
+									// resident
+
+	// Count groups, at most one per resident frame. Group g has the reference
+	// count groupCount[g] and its frames run from groupHead[g] (newest) to
+	// groupTail[g] (oldest)
+	private final long groupCount[];
+	private final int groupHead[];
+	private final int groupTail[];
+	private final int groupPrev[];
+	private final int groupNext[];
+
+	private int firstGroup; // group with the smallest count
+	private int freeGroup; // first unused group, chained through groupNext
+
+	public LFUReplacement(int frames) {
+		framePrev = new int[frames];
+		frameNext = new int[frames];
+		frameGroup = new int[frames];
+
+		groupCount = new long[frames];
+		groupHead = new int[frames];
+		groupTail = new int[frames];
+		groupPrev = new int[frames];
+		groupNext = new int[frames];
+
+		for (int i = 0; i < frames; i++) {
+			frameGroup[i] = -1;
+			groupNext[i] = (i + 1 < frames) ? i + 1 : -1;
+		}
+		firstGroup = -1;
+		freeGroup = 0;
+	}
+
+	@Override
+	public void touch(int frame) {
+		int group = frameGroup[frame];
+		if (group == -1)
+			return;
+
+		long count = groupCount[group] + 1;
+		int target = groupNext[group];
+
+		unlinkFrame(frame);
+		if (target == -1 || groupCount[target] != count) {
+			// the frame may have left its group empty, in which case that
+			// group was released and the new one is linked after its
+			// predecessor
+			int after = (groupHead[group] == -1) ? groupPrev[group] : group;
+			if (groupHead[group] == -1)
+				releaseGroup(group);
+			target = newGroupAfter(after, count);
+		} else if (groupHead[group] == -1) {
+			releaseGroup(group);
+		}
+
+		linkFrame(frame, target);
+	}
+
+	@Override
+	public void admit(int frame, long page) {
+		int target = firstGroup;
+		if (target == -1 || groupCount[target] != 1)
+			target = newGroupAfter(-1, 1);
+		linkFrame(frame, target);
+	}
+
+	@Override
+	public int victim(long page) {
+		if (firstGroup == -1)
+			throw new IllegalStateException("No resident frame to replace");
+
+		int frame = groupTail[firstGroup];
+		remove(frame);
+		return frame;
+	}
+
+	@Override
+	public void remove(int frame) {
+		int group = frameGroup[frame];
+		if (group == -1)
+			return;
+
+		unlinkFrame(frame);
+		if (groupHead[group] == -1)
+			releaseGroup(group);
+	}
+
+	@Override
+	public String getName() {
+		return "LFU";
+	}
+
+	/**
+	 * Write the groups by increasing count, each with its frames from the
+	 * newest to the oldest
+	 */
+	@Override
+	public void save(DataOutput out) throws IOException {
+		int groups = 0;
+		for (int group = firstGroup; group != -1; group = groupNext[group])
+			groups++;
+
+		out.writeInt(groups);
+		for (int group = firstGroup; group != -1; group = groupNext[group]) {
+			int size = 0;
+			for (int frame = groupHead[group]; frame != -1; frame = frameNext[frame])
+				size++;
+
+			out.writeLong(groupCount[group]);
+			out.writeInt(size);
+			for (int frame = groupHead[group]; frame != -1; frame = frameNext[frame])
+				out.writeInt(frame);
+		}
+	}
+
+	@Override
+	public void restore(DataInput in) throws IOException {
+		int last = -1;
+		for (int groups = in.readInt(); groups > 0; groups--) {
+			int group = newGroupAfter(last, in.readLong());
+			int frames[] = new int[in.readInt()];
+			for (int i = 0; i < frames.length; i++)
+				frames[i] = in.readInt();
+			for (int i = frames.length - 1; i >= 0; i--)
+				linkFrame(frames[i], group);
+			last = group;
+		}
+	}
+
+	private void linkFrame(int frame, int group) {
+		int head = groupHead[group];
+		framePrev[frame] = -1;
+		frameNext[frame] = head;
+		if (head != -1)
+			framePrev[head] = frame;
+		else
+			groupTail[group] = frame;
+		groupHead[group] = frame;
+		frameGroup[frame] = group;
+	}
+
+	private void unlinkFrame(int frame) {
+		int group = frameGroup[frame];
+		int p = framePrev[frame];
+		int n = frameNext[frame];
+
+		if (p != -1)
+			frameNext[p] = n;
+		else
+			groupHead[group] = n;
+
+		if (n != -1)
+			framePrev[n] = p;
+		else
+			groupTail[group] = p;
+
+		frameGroup[frame] = -1;
+	}
+
+	/**
+	 * Take an unused group, give it the count and link it after the given
+	 * group, or first when after is -1
+	 */
+	private int newGroupAfter(int after, long count) {
+		int group = freeGroup;
+		freeGroup = groupNext[group];
+
+		groupCount[group] = count;
+		groupHead[group] = -1;
+		groupTail[group] = -1;
+		groupPrev[group] = after;
+
+		int next = (after == -1) ? firstGroup : groupNext[after];
+		groupNext[group] = next;
+		if (next != -1)
+			groupPrev[next] = group;
+		if (after == -1)
+			firstGroup = group;
+		else
+			groupNext[after] = group;
+
+		return group;
+	}
+
+	/**
+	 * Unlink an empty group and return it to the free chain
+	 */
+	private void releaseGroup(int group) {
+		int p = groupPrev[group];
+		int n = groupNext[group];
+
+		if (p != -1)
+			groupNext[p] = n;
+		else
+			firstGroup = n;
+		if (n != -1)
+			groupPrev[n] = p;
+
+		groupNext[group] = freeGroup;
+		freeGroup = group;
+	}
+}
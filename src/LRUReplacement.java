@@ -0,0 +1,55 @@
+/**
+ * description : Least recently used replacement.
+ * 				Resident frames are kept in an intrusive list ordered by their last reference,
+ * 				the most recent at the head. A reference moves the frame to the head and the
+ * 				victim is the tail, so the order comes from the sequence of accesses and two
+ * 				references can never tie the way millisecond timestamps did.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class LRUReplacement implements ReplacementPolicy {
+
+	private final FrameList recency;
+
+	public LRUReplacement(int frames) {
+		recency = new FrameList(frames);
+	}
+
+	@Override
+	public void touch(int frame) {
+		recency.moveToFront(frame);
+	}
+
+	@Override
+	public void admit(int frame, long page) {
+		recency.addFirst(frame);
+	}
+
+	@Override
+	public int victim(long page) {
+		return recency.removeLast();
+	}
+
+	@Override
+	public void remove(int frame) {
+		recency.remove(frame);
+	}
+
+	@Override
+	public String getName() {
+		return "LRU";
+	}
+
+	@Override
+	public void save(DataOutput out) throws IOException {
+		recency.save(out);
+	}
+
+	@Override
+	public void restore(DataInput in) throws IOException {
+		recency.restore(in);
+	}
+}
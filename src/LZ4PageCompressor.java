@@ -0,0 +1,164 @@
+/**
+ * description : Fast LZ77 compression of single pages, in the block format of LZ4.
+ * 				The compressed page is a list of sequences, each made of a token, literal bytes
+ * 				copied as they are and a match copying bytes already decompressed, given by its
+ * 				distance back and its length. The high half of the token holds the literal length
+ * 				and the low half the match length minus 4, a half of 15 being continued by bytes
+ * 				added up until one is not 255. The last sequence only has literals.
+ * 				Matches are found through a hash table of the last position of every 4 byte
+ * 				sequence. Its entries are numbered across calls instead of being cleared, so
+ * 				compressing a page touches no more memory than the page, unlike Deflater whose
+ * 				reset clears tables much larger than a small page.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class LZ4PageCompressor implements PageCompressor {
+
+	private static final int HASH_BITS = 12;
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_DISTANCE = 65535;
+
+	private final int table[] = new int[1 << HASH_BITS]; // Last position of
+															// each hash, plus
+															// epoch
+	private int epoch = 1; // Positions below it belong to earlier pages
+
+	@Override
+	public int compress(byte src[], int offset, int len, byte dst[]) {
+		if (epoch > Integer.MAX_VALUE - len - 1) { // numbering wraps around
+			Arrays.fill(table, 0);
+			epoch = 1;
+		}
+		int base = epoch; // numbers the positions of this page
+		epoch += len;
+
+		int end = offset + len;
+		int anchor = offset; // first literal not yet written
+		int out = 0;
+
+		for (int i = offset; i + MIN_MATCH <= end;) {
+			int sequence = readInt(src, i);
+			int hash = (sequence * -1640531535) >>> (32 - HASH_BITS);
+			int candidate = table[hash] - base + offset;
+			table[hash] = i - offset + base;
+
+			if (candidate < offset || i - candidate > MAX_DISTANCE || readInt(src, candidate) != sequence) {
+				i++;
+				continue;
+			}
+
+			int matchEnd = i + MIN_MATCH;
+			for (int j = candidate + MIN_MATCH; matchEnd < end && src[matchEnd] == src[j]; j++)
+				matchEnd++;
+
+			out = writeSequence(src, anchor, i - anchor, i - candidate, matchEnd - i, dst, out);
+			if (out < 0)
+				return -1;
+			i = anchor = matchEnd;
+		}
+
+		return writeSequence(src, anchor, end - anchor, 0, 0, dst, out);
+	}
+
+	@Override
+	public int decompress(byte src[], int offset, int len, byte dst[], int dstOffset, int length)
+			throws IOException {
+		int in = offset;
+		int inEnd = offset + len;
+		int out = dstOffset;
+		int outEnd = dstOffset + length;
+
+		while (in < inEnd) {
+			int token = src[in++] & 0xFF;
+
+			int literals = token >>> 4;
+			if (literals == 15) {
+				int b;
+				do {
+					if (in == inEnd)
+						throw new IOException("Truncated literal length");
+					b = src[in++] & 0xFF;
+					literals += b;
+				} while (b == 255);
+			}
+			if (literals > inEnd - in || literals > outEnd - out)
+				throw new IOException("Literals out of bounds");
+			System.arraycopy(src, in, dst, out, literals);
+			in += literals;
+			out += literals;
+
+			if (in == inEnd)
+				break; // last sequence
+
+			if (inEnd - in < 2)
+				throw new IOException("Truncated match distance");
+			int distance = (src[in] & 0xFF) | (src[in + 1] & 0xFF) << 8;
+			in += 2;
+
+			int match = (token & 15) + MIN_MATCH;
+			if ((token & 15) == 15) {
+				int b;
+				do {
+					if (in == inEnd)
+						throw new IOException("Truncated match length");
+					b = src[in++] & 0xFF;
+					match += b;
+				} while (b == 255);
+			}
+			if (distance == 0 || distance > out - dstOffset || match > outEnd - out)
+				throw new IOException("Match out of bounds");
+
+			for (int from = out - distance, to = out + match; out < to;)
+				dst[out++] = dst[from++]; // byte by byte, a match can overlap
+											// what it copies
+		}
+
+		return out - dstOffset;
+	}
+
+	@Override
+	public String getName() {
+		return "lz4";
+	}
+
+	/**
+	 * Write one sequence at dst[out]
+	 *
+	 * @return position after the sequence, -1 if it does not fit
+	 */
+	private static int writeSequence(byte src[], int literalStart, int literals, int distance, int match, byte dst[],
+			int out) {
+		int extra = match == 0 ? 0 : match - MIN_MATCH;
+		int size = 1 + literals + (literals >= 15 ? (literals - 15) / 255 + 1 : 0)
+				+ (match == 0 ? 0 : 2 + (extra >= 15 ? (extra - 15) / 255 + 1 : 0));
+		if (out + size > dst.length)
+			return -1;
+
+		dst[out++] = (byte) (Math.min(literals, 15) << 4 | Math.min(extra, 15));
+		if (literals >= 15)
+			out = writeLength(literals - 15, dst, out);
+		System.arraycopy(src, literalStart, dst, out, literals);
+		out += literals;
+
+		if (match > 0) {
+			dst[out++] = (byte) distance;
+			dst[out++] = (byte) (distance >>> 8);
+			if (extra >= 15)
+				out = writeLength(extra - 15, dst, out);
+		}
+		return out;
+	}
+
+	private static int writeLength(int length, byte dst[], int out) {
+		for (; length >= 255; length -= 255)
+			dst[out++] = (byte) 255;
+		dst[out++] = (byte) length;
+		return out;
+	}
+
+	private static int readInt(byte b[], int i) {
+		return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+	}
+}
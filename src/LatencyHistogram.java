@@ -0,0 +1,135 @@
+/**
+ * description : Histogram of latencies in nanoseconds kept in a primitive array.
+ * 				Buckets are log-linear: every power of two is split into 8 buckets, so a value is
+ * 				known within 12.5% whatever its size and 512 buckets cover every long value.
+ * 				Recording is a few arithmetic operations and an ordered store, made by a single
+ * 				thread; other threads, such as a JMX client, can read the histogram at any time and
+ * 				see counts that are at most slightly behind.
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 3; // 2^3 buckets per power of two
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	public static final int BUCKETS = 64 * SUB_BUCKETS;
+
+	// counts holds the count of every bucket, followed by the total count,
+	// the sum and the maximum of the recorded values
+	private static final int COUNT = BUCKETS;
+	private static final int SUM = BUCKETS + 1;
+	private static final int MAX = BUCKETS + 2;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 3);
+
+	/**
+	 * Record a value. Must always be called by the same thread
+	 *
+	 * @param nanos
+	 *            : latency in nanoseconds, negative values count as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		int bucket = bucketOf(value);
+
+		counts.lazySet(bucket, counts.get(bucket) + 1);
+		counts.lazySet(COUNT, counts.get(COUNT) + 1);
+		counts.lazySet(SUM, counts.get(SUM) + value);
+		if (value > counts.get(MAX))
+			counts.lazySet(MAX, value);
+	}
+
+	public long getCount() {
+		return counts.get(COUNT);
+	}
+
+	public double getMean() {
+		long count = counts.get(COUNT);
+		return count == 0 ? 0 : (double) counts.get(SUM) / count;
+	}
+
+	public long getMax() {
+		return counts.get(MAX);
+	}
+
+	/**
+	 * Value below which the given fraction of the recorded values fall
+	 *
+	 * @param fraction
+	 *            : between 0 and 1, 0.99 for the 99th percentile
+	 * @return upper bound of the bucket holding the percentile, 0 if nothing
+	 *         was recorded
+	 */
+	public long getPercentile(double fraction) {
+		long buckets[] = new long[BUCKETS];
+		copyCounts(buckets);
+		return Math.min(percentile(buckets, fraction), getMax());
+	}
+
+	/**
+	 * Copy the bucket counts, used to compute percentiles over an interval by
+	 * subtracting an earlier copy
+	 */
+	public void copyCounts(long destination[]) {
+		for (int i = 0; i < BUCKETS; i++)
+			destination[i] = counts.get(i);
+	}
+
+	/**
+	 * Percentile of bucket counts given by copyCounts(), or of the difference
+	 * of two copies
+	 */
+	public static long percentile(long buckets[], double fraction) {
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++)
+			total += buckets[i];
+		if (total == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(fraction * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets[i];
+			if (seen >= Math.max(rank, 1))
+				return upperBound(i);
+		}
+		return upperBound(BUCKETS - 1);
+	}
+
+	/**
+	 * Bucket of a value: values below 8 have a bucket each, larger values
+	 * share a bucket with the values having the same 4 highest bits
+	 */
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Largest value of a bucket
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+		return lower + (1L << (exponent - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * Summary of the histogram for reports and JMX
+	 */
+	public LatencySnapshot snapshot() {
+		long buckets[] = new long[BUCKETS];
+		copyCounts(buckets);
+		long max = getMax();
+		return new LatencySnapshot(getCount(), getMean(), Math.min(percentile(buckets, 0.5), max),
+				Math.min(percentile(buckets, 0.99), max), Math.min(percentile(buckets, 0.999), max), max);
+	}
+}
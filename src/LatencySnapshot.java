@@ -0,0 +1,71 @@
+/**
+ * description : Summary of a LatencyHistogram at one point in time.
+ * 				Immutable, so it can be handed to JMX, which shows it as composite data with one
+ * 				item per getter.
+ */
+
+import java.beans.ConstructorProperties;
+
+public class LatencySnapshot {
+
+	private final long count;
+	private final double mean;
+	private final long median;
+	private final long p99;
+	private final long p999;
+	private final long max;
+
+	/**
+	 * @param count
+	 *            : number of recorded values
+	 * @param mean
+	 *            : mean in nanoseconds
+	 * @param median
+	 *            : 50th percentile in nanoseconds
+	 * @param p99
+	 *            : 99th percentile in nanoseconds
+	 * @param p999
+	 *            : 99.9th percentile in nanoseconds
+	 * @param max
+	 *            : largest value in nanoseconds
+	 */
+	@ConstructorProperties({ "count", "mean", "median", "p99", "p999", "max" })
+	public LatencySnapshot(long count, double mean, long median, long p99, long p999, long max) {
+		this.count = count;
+		this.mean = mean;
+		this.median = median;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public long getMedian() {
+		return median;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return count + " x, mean " + Math.round(mean) + " ns, p50 " + median + " ns, p99 " + p99 + " ns, p99.9 "
+				+ p999 + " ns, max " + max + " ns";
+	}
+}
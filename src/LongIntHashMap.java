@@ -0,0 +1,156 @@
+/**
+ * description : Open addressing hash map from long keys to int values.
+ * 				Keys and values are kept in primitive arrays and collisions are resolved by linear
+ * 				probing, so get, put and remove allocate nothing once the map has grown to its
+ * 				working size. Used wherever a page number has to be mapped to an index, for
+ * 				example the ghost entries of the adaptive replacement policies.
+ */
+
+public class LongIntHashMap {
+
+	public static final int MISSING = -1; // value returned for absent keys
+
+	private static final long EMPTY = Long.MIN_VALUE; // marker of a free slot,
+														// cannot be used as a
+														// key
+
+	private long keys[];
+	private int values[];
+	private int mask;
+	private int size;
+
+	public LongIntHashMap() {
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            : number of keys the map should hold without growing
+	 */
+	public LongIntHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * @return value of the key, MISSING if the key is not in the map
+	 */
+	public int get(long key) {
+		int i = indexOf(key);
+		return i < 0 ? MISSING : values[i];
+	}
+
+	public boolean containsKey(long key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Associate the value with the key
+	 *
+	 * @return previous value of the key, MISSING if there was none
+	 */
+	public int put(long key, int value) {
+		if (key == EMPTY)
+			throw new IllegalArgumentException("Key " + key + " is reserved");
+
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				int previous = values[i];
+				values[i] = value;
+				return previous;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > keys.length)
+			rehash(keys.length * 2);
+
+		return MISSING;
+	}
+
+	/**
+	 * Remove the key from the map
+	 *
+	 * @return value of the removed key, MISSING if the key was not in the map
+	 */
+	public int remove(long key) {
+		int i = indexOf(key);
+		if (i < 0)
+			return MISSING;
+
+		int previous = values[i];
+		size--;
+
+		// Shift the following entries of the probe sequence back so that no
+		// lookup stops early at the freed slot
+		int gap = i;
+		int j = (i + 1) & mask;
+		while (keys[j] != EMPTY) {
+			int home = hash(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+			j = (j + 1) & mask;
+		}
+		keys[gap] = EMPTY;
+
+		return previous;
+	}
+
+	public void clear() {
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = EMPTY;
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private int indexOf(long key) {
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key)
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < capacity; i++)
+			keys[i] = EMPTY;
+	}
+
+	private void rehash(int capacity) {
+		long oldKeys[] = keys;
+		int oldValues[] = values;
+
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY)
+				put(oldKeys[i], oldValues[i]);
+		}
+	}
+
+	/**
+	 * Finalizer of MurmurHash3, spreads sequential page numbers over the table
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
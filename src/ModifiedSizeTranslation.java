@@ -1,36 +1,18 @@
-
 /**
  * @author Ekta Arora (14115153)
  * description : This program translates the logical address to physical address
  * 				The size of Virtual memory is greater than the size of the Physical memory
+ * 				The translation is done by a TranslationEngine configured by the system properties.
  */
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 public class ModifiedSizeTranslation {
 
-	private final int SIZE = 256; // Size of page and frame
-	private final int maxSixe = 128 * SIZE; // Maximum size of physical memory
-
-	// TLB structure is as:
-	// key is page number
-	// there are two values associated with this one key
-	// Value 1 = frame number of the page
-	// Value 2 = counter indicating the number of times the page has been
-	// accessed in TLB for LRU algorithm
-	private Map<Integer, List<Integer>> TLB = null;
-
-	private int pageTable[] = null;
-	private byte physicalMemory[] = null;
+	private final AddressGeometry geometry; // Page size and address width,
+											// from the page.size and
+											// address.bits system properties
 
 	private final String FILEPATH = "./docs/";
 	private final String LOGICAL_ADDRESS_FILENAME = "addresses.txt"; // file
@@ -39,277 +21,209 @@ public class ModifiedSizeTranslation {
 																		// addresses
 	private final String BACKING_STORE_FILENAME = "BACKING_STORE.bin";
 
-	private RandomAccessFile backingStore = null;
-
-	private int physicalMemoryAddress;
-	private int framePointer;
-	private int memPointer;
-	private int frameNumber;
-	private int pageNumber;
-	private int offset;
-	private int signedValue;
-	private int TLBHits;
-	private int pageFaults;
-	private int totalAddresses;
-
-	private long timer[]; // Timer of the page residing in page table. For LRU
-							// algorithm
+	private final String traceFileName; // Trace given on the command line or
+										// LOGICAL_ADDRESS_FILENAME
+	private final String backingStoreFileName; // Backing store given on the
+												// command line or
+												// BACKING_STORE_FILENAME
+
+	private TraceReader trace = null; // Reader decoding the logical addresses
+	private ResultSink sink = null; // Destination of the translated addresses
+
+	private BackingStore backingStore = null; // Backing store mapped once for
+												// the whole run
+	private TranslationEngine engine = null; // Engine translating the
+												// addresses
+	private WorkingSetSeries workingSet = null; // Working set and windowed
+												// rates, from the workingset
+												// system properties
+	private SimulatorMetrics metrics = null; // Live counters and latencies,
+												// from the metrics and
+												// metrics.interval system
+												// properties
+	private NextUseIndex nextUseIndex = null; // Next use of every access, only
+												// built for the opt policy
+	private Snapshot snapshot = null; // Snapshot the run resumes from, from
+										// the snapshot.restore system property
+	private final String SNAPSHOT_FILENAME = System.getProperty("snapshot.save"); // snapshot
+																					// written
+																					// during
+																					// the
+																					// run
+	private final long SNAPSHOT_AT = Long.getLong("snapshot.at", -1); // records
+																		// translated
+																		// before
+																		// the
+																		// snapshot,
+																		// the
+																		// whole
+																		// trace
+																		// if
+																		// not
+																		// set
 
 	public ModifiedSizeTranslation() {
+		this(null, null);
+	}
 
-		framePointer = 0;
-		memPointer = 0;
-		frameNumber = 0;
-		pageNumber = 0;
-		offset = 0;
-		signedValue = 0;
-		TLBHits = 0;
-		pageFaults = 0;
-		totalAddresses = 0;
-
-		pageTable = new int[SIZE];
-		physicalMemory = new byte[maxSixe];
-		TLB = new HashMap<Integer, List<Integer>>();
-
-		timer = new long[SIZE];
+	/**
+	 * @param traceFileName
+	 *            : trace to translate, null for docs/addresses.txt
+	 * @param backingStoreFileName
+	 *            : backing store, null for docs/BACKING_STORE.bin
+	 */
+	public ModifiedSizeTranslation(String traceFileName, String backingStoreFileName) {
+		this.traceFileName = (traceFileName != null) ? traceFileName : FILEPATH + LOGICAL_ADDRESS_FILENAME;
+		this.backingStoreFileName = (backingStoreFileName != null) ? backingStoreFileName
+				: FILEPATH + BACKING_STORE_FILENAME;
 
-		for (int i = 0; i < SIZE; i++) {
-			pageTable[i] = -1; // Initialize pageTable values to -1 to indicate
-								// that no page is currently in page table
-			timer[i] = System.currentTimeMillis(); // update the timer of each
-													// page as current system
-													// time
-		}
+		geometry = AddressGeometry.fromSystemProperties();
 	}
 
 	public static void main(String[] args) {
-		new ModifiedSizeTranslation().init();
+		new ModifiedSizeTranslation(args.length > 0 ? args[0] : null, args.length > 1 ? args[1] : null).init();
 	}
 
 	public void init() {
 
-		BufferedReader br = null;
-		String fileName = FILEPATH + LOGICAL_ADDRESS_FILENAME;
-
-		int logicalAddress = 0;
-
-		File file = new File(fileName);
-		FileReader fr;
-
 		try {
-			fr = new FileReader(file);
-			br = new BufferedReader(fr);
-
-			while ((logicalAddress = Integer.valueOf(br.readLine())) > 0) {
-
-				pageNumber = logicalAddress >> 8;
-				offset = logicalAddress & 0x00FF;
+			trace = new TraceReader(traceFileName);
+			sink = ResultSink.fromSystemProperties();
+			snapshot = Snapshot.fromSystemProperties();
+
+			backingStore = new BackingStore(backingStoreFileName, geometry.getPageSize());
+			engine = TranslationEngine.modifiedSize(geometry, backingStore);
+			metrics = SimulatorMetrics.fromSystemProperties("ModifiedSizeTranslation");
+			engine.setMetrics(metrics);
+			workingSet = WorkingSetSeries.fromSystemProperties();
+
+			if (engine.getPolicy() instanceof OPTReplacement) { // Belady's
+																// policy needs
+																// to know the
+																// future
+																// accesses
+				nextUseIndex = NextUseIndex.build(traceFileName, geometry);
+				engine.setNextUseIndex(nextUseIndex);
+			}
 
-				if (TLB.containsKey(pageNumber)) {// TLB Hit
-					TLBHits++;
-					frameNumber = TLB.get(pageNumber).get(0);
-					updateTLBCounter(pageNumber); // Update counter of the page
-													// in TLB for LRU algorithm
-				} else if (pageTable[pageNumber] > 0) { // Page Table Hit
-					frameNumber = pageTable[pageNumber];
-					updatePageTableTimer(pageNumber); // Update timer of the
-														// page for LRU
-														// algorithm
-				} else { // Page Fault
-					pageFaults++;
+			if (snapshot != null) { // resume where the snapshot was taken
+				long start = System.nanoTime();
+				snapshot.restore(engine);
+				snapshot.seek(trace);
+				System.err.println("Restored " + engine.getTranslations() + " translations from "
+						+ System.getProperty("snapshot.restore") + " in " + (System.nanoTime() - start) / 1000000
+						+ " ms");
+			}
 
-					handlePageFault();
+			while (trace.next()) {
+				long logicalAddress = trace.address();
+				long physicalAddress = engine.translate(logicalAddress, trace.isWrite());
 
-					addToTLB(pageNumber, frameNumber); // add the page to TLB
-					addToPageTable(pageNumber, frameNumber); // add the page to
-																// page table
+				if (physicalAddress != TranslationEngine.INVALID_ADDRESS) {
+					sink.record(logicalAddress, physicalAddress, engine.getValue());
+					if (workingSet != null)
+						workingSet.record(geometry.pageNumber(logicalAddress), engine.getPageFaults(),
+								engine.getTLBHits());
 				}
-
-				totalAddresses++; // counter mainting the total logical
-									// addresses processed
-
-				physicalMemoryAddress = frameNumber + offset;
-				signedValue = physicalMemory[physicalMemoryAddress];
-
-				System.out.println("Virtual address: " + logicalAddress + " Physical address: " + physicalMemoryAddress
-						+ " Value: " + signedValue);
+				saveSnapshot(false);
 			}
+			saveSnapshot(true);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
 			e.printStackTrace();
-		} catch (NumberFormatException e) {
+		} finally {
+			closeTrace();
+			closeSink();
+			closeMetrics();
+			closeWorkingSet();
+			closeBackingStore();
+			closeNextUseIndex();
+			closeSnapshot();
 		}
 
-		statistics(); // print the statistics of the program
+		if (engine != null)
+			engine.printStatistics(); // print the statistics of the program
 	}
 
-	private void handlePageFault() {
-
-		String fileName = FILEPATH + BACKING_STORE_FILENAME;
-
-		try {
-			backingStore = new RandomAccessFile(fileName, "r");
-
-			backingStore.seek(pageNumber * SIZE);
-
-			// Before loading a page to main memory check Main memory's size
-			// If the size is full, first find victim page to be removed using
-			// LRU algorithm and then add new page
-			// If the size is not full, add the new page to Main memory
-			if (memPointer == maxSixe) {
-				int victimPage = getVictimPage();
-				frameNumber = pageTable[victimPage];
-				framePointer = (frameNumber / SIZE);
-				memPointer = framePointer;
-
-				backingStore.read(physicalMemory, memPointer, SIZE);
-
-				pageTable[victimPage] = -1; // update page table for victim page
-											// indicating it has been removed
-				timer[victimPage] = 0;// update page timer of victim page
-										// indicating it has been removed
-				TLB.remove(victimPage); // update TLB for victim page indicating
-										// it has been removed
-
-			} else {
-				backingStore.read(physicalMemory, memPointer, SIZE);
-				frameNumber = framePointer * SIZE;
-				framePointer++;
-				memPointer += SIZE;
+	private void closeTrace() {
+		if (trace != null) {
+			try {
+				trace.close();
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
-
-			backingStore.close();
-
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (Exception e) {
-			e.printStackTrace();
 		}
 	}
 
-	private void statistics() {
-
-		float pageFaultRate = (float) pageFaults / totalAddresses;
-		float TLBHitRate = (float) TLBHits / totalAddresses;
-
-		System.out.println("Page Fault Rate : " + pageFaultRate);
-		System.out.println("TLB Hit Rate : " + TLBHitRate);
+	private void closeSink() {
+		if (sink != null) {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 
-	/**
-	 * This function returns the victim page for page replacement using LRU
-	 * algorithm. Victim will be the page which was not recently used by
-	 * comparing each page in table against their value in timer
-	 */
-	private int getVictimPage() {
-
-		int victimPage = 0;
-		long currentTime = System.currentTimeMillis();
-
-		for (int i = 0; i < timer.length; i++) {
-			if (timer[i] < currentTime) {
-				currentTime = timer[i];
-				victimPage = i;
+	private void closeWorkingSet() {
+		if (workingSet != null) {
+			try {
+				workingSet.close();
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
 		}
-
-		return victimPage;
 	}
 
-	/**
-	 * Function to add the new page to TLB Also, check the size of TLB and if
-	 * the size exceeds maximum limit then do the page replacement using LRU
-	 * algorithm
-	 * 
-	 * @param newPage
-	 *            : new page's page number
-	 * @param newFrame
-	 *            : new page's frame number
-	 */
-	private void addToTLB(int newPage, int newFrame) {
-
-		List<Integer> newValues = new ArrayList<Integer>();
-		newValues.add(newFrame);
-		newValues.add(1);
+	private void closeMetrics() {
+		if (metrics != null)
+			metrics.close(); // the counters stay readable for the statistics
+	}
 
-		// If TLB is full then remove the victim page first before adding any
-		// new page in TLB
-		if (TLB.size() >= 16) {// TLB full replace page
-			int victimInTLB = getVictimTLBPage();
-			TLB.remove(victimInTLB); // Remove Victim Page from TLB
+	private void closeBackingStore() {
+		if (backingStore != null) {
+			try {
+				backingStore.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
-
-		// Add new page in TLB
-		TLB.put(newPage, newValues);// Add new Page to TLB
 	}
 
-	/**
-	 * Function to get the victim page from TLB based on the counter value of
-	 * each page in TLB
-	 */
-	private int getVictimTLBPage() {
-
-		int victim = -1;
-		int min = Integer.MAX_VALUE;
-		int key = -1;
-
-		for (Map.Entry<Integer, List<Integer>> entry : TLB.entrySet()) {
-			key = entry.getKey();
-			if (min > TLB.get(key).get(1)) {
-				min = TLB.get(key).get(1);
-				victim = key;
+	private void closeNextUseIndex() {
+		if (nextUseIndex != null) {
+			try {
+				nextUseIndex.close();
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
 		}
-
-		return victim;
 	}
 
-	/**
-	 * Function to add the new page to page table
-	 * 
-	 * @param newPage
-	 *            : new page's page number
-	 * @param newFrame
-	 *            : new page's frame number
-	 */
-	private void addToPageTable(int newPage, int newFrame) {
-		if (pageTable[newPage] == -1) {
-			pageTable[newPage] = newFrame; // update page table
-			timer[newPage] = System.currentTimeMillis(); // update timer of the
-															// page
+	private void closeSnapshot() {
+		if (snapshot != null) {
+			try {
+				snapshot.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 	}
 
 	/**
-	 * Page is there in TLB but accessed again, in case of TLB Hit. Hence update
-	 * the counter of the Page for LRU algorithm
+	 * Write the snapshot asked for by the snapshot.save system property once
+	 * snapshot.at records have been translated, or at the end of the trace
+	 *
+	 * @param endOfTrace
+	 *            : true when the whole trace has been translated
 	 */
-	private void updateTLBCounter(int page) {
+	private void saveSnapshot(boolean endOfTrace) throws IOException {
+		if (SNAPSHOT_FILENAME == null)
+			return;
 
-		if (TLB.containsKey(page)) { // update counter of the page
-			int localFrameNumber = TLB.get(page).get(0);
-			int localCounter = TLB.get(page).get(1);
-
-			List<Integer> newValues = new ArrayList<Integer>();
-			newValues.add(localFrameNumber);
-			newValues.add(localCounter + 1);
-
-			TLB.replace(page, newValues);
-
-		} // else page is not in TLB
-	}
-
-	/**
-	 * Page is there in page table but accessed again Hence update the timer of
-	 * the Page for LRU algorithm
-	 */
-	private void updatePageTableTimer(int page) {
-		if (pageTable[page] != -1) {// Page is there in page table just update
-									// the counter as it is accessed again
-			timer[pageNumber] = System.currentTimeMillis();
-		}
+		long records = engine.getTranslations() + engine.getInvalidAddresses();
+		if (endOfTrace ? SNAPSHOT_AT < 0 : records == SNAPSHOT_AT)
+			Snapshot.save(engine, trace, SNAPSHOT_FILENAME);
 	}
 }
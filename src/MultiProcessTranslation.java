@@ -0,0 +1,267 @@
+/**
+ * description : This program translates the logical addresses of several processes sharing one
+ * 				physical memory. Every process has its own trace and page table, the frames
+ * 				are shared and replaced with a global replacement policy, and the TLB entries are
+ * 				tagged with the ASID of their process so that a context switch does not flush the
+ * 				TLB. The traces are interleaved by a Scheduler, and the page fault rate, TLB hit
+ * 				rate and resident set size are reported per process and for the whole run.
+ * 				The trace files are given as arguments, docs/addresses.txt and docs/addresses2.txt
+ * 				by default. Every process reads its pages from the same backing store file.
+ * 				The page size and address width come from the page.size and address.bits system
+ * 				properties; addresses outside the address space are counted and skipped.
+ */
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class MultiProcessTranslation {
+
+	private final AddressGeometry geometry; // Page size and address width,
+											// from the page.size and
+											// address.bits system properties
+	private final int SIZE; // Size of page and frame
+	private final int frames; // Number of frames shared by all processes
+
+	private final String FILEPATH = "./docs/";
+	private final String BACKING_STORE_FILENAME = "BACKING_STORE.bin";
+
+	private SimulatedProcess processes[] = null;
+	private boolean finished[] = null; // finished[i] is true once the trace of
+										// process i has ended
+
+	private byte physicalMemory[] = null;
+	private int frameOwner[] = null; // Process holding each frame
+	private int framePage[] = null; // Page held by each frame
+	private int framePointer; // Next frame never used so far
+
+	private TranslationLookasideBuffer TLB = null;
+	private boolean flushOnSwitch; // Flush the TLB on every context switch
+									// instead of relying on ASIDs
+	private ReplacementPolicy policy = null;
+	private Scheduler scheduler = null;
+
+	private BackingStore backingStore = null;
+	private ByteBuffer storeViews[] = null; // Views of the backing store used
+											// by the reads
+	private ResultSink sink = null;
+
+	private long contextSwitches;
+	private long invalidAddresses; // Addresses outside the address space
+
+	public MultiProcessTranslation(String traceFileNames[]) {
+		geometry = AddressGeometry.fromSystemProperties();
+		SIZE = geometry.getPageSize();
+		frames = Integer.getInteger("frames", 128);
+		if (frames <= 0 || (long) frames * SIZE > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Invalid frame count " + frames);
+		if (geometry.getPageCount() > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException(
+					"Address space of " + geometry.getPageCount() + " pages is too large for the process page tables");
+		framePointer = 0;
+		contextSwitches = 0;
+		invalidAddresses = 0;
+
+		processes = new SimulatedProcess[traceFileNames.length];
+		finished = new boolean[traceFileNames.length];
+		for (int i = 0; i < traceFileNames.length; i++)
+			processes[i] = new SimulatedProcess(i, traceFileNames[i], (int) geometry.getPageCount());
+
+		physicalMemory = new byte[frames * SIZE];
+		frameOwner = new int[frames];
+		framePage = new int[frames];
+
+		TLB = TranslationLookasideBuffer.fromSystemProperties();
+		flushOnSwitch = !Boolean.parseBoolean(System.getProperty("tlb.asid", "true"));
+		policy = ReplacementPolicy.fromSystemProperties(frames);
+		if (policy instanceof OPTReplacement)
+			throw new IllegalArgumentException("The opt policy needs a single trace");
+		scheduler = Scheduler.fromSystemProperties();
+	}
+
+	public static void main(String[] args) {
+		if (args.length == 0)
+			args = new String[] { "./docs/addresses.txt", "./docs/addresses2.txt" };
+		new MultiProcessTranslation(args).init();
+	}
+
+	public void init() {
+
+		try {
+			backingStore = new BackingStore(FILEPATH + BACKING_STORE_FILENAME, SIZE);
+			storeViews = backingStore.newViews();
+			sink = ResultSink.fromSystemProperties();
+			for (SimulatedProcess process : processes)
+				process.open();
+
+			int previous = -1;
+			int current = scheduler.next(-1, finished);
+
+			while (current != -1) {
+				SimulatedProcess process = processes[current];
+
+				if (previous != -1 && current != previous) {
+					contextSwitches++;
+					if (flushOnSwitch)
+						TLB.flush();
+				}
+
+				// Run the process for one quantum or until its trace ends
+				for (int i = 0; i < scheduler.getQuantum(); i++) {
+					if (!process.next()) {
+						finished[current] = true;
+						process.close();
+						break;
+					}
+					translate(process, process.address());
+				}
+
+				previous = current;
+				current = scheduler.next(current, finished);
+			}
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			for (SimulatedProcess process : processes)
+				closeProcess(process);
+			closeSink();
+			closeBackingStore();
+		}
+
+		statistics();
+	}
+
+	/**
+	 * Translate one logical address of a process and write the result to the
+	 * sink, addresses outside the address space are only counted
+	 */
+	private void translate(SimulatedProcess process, long logicalAddress) throws IOException {
+		if (!geometry.contains(logicalAddress)) {
+			invalidAddresses++;
+			return;
+		}
+
+		int asid = process.getAsid();
+		int pageNumber = (int) geometry.pageNumber(logicalAddress);
+		int offset = geometry.offset(logicalAddress);
+		int frame = TLB.lookup(asid, pageNumber);
+
+		if (frame != -1) { // TLB hit
+			process.TLBHits++;
+			policy.touch(frame);
+		} else if ((frame = process.pageTable[pageNumber]) != -1) { // Page
+																	// table hit
+			policy.touch(frame);
+			TLB.insert(asid, pageNumber, frame); // Refill the TLB entry, it
+													// may have been replaced
+													// by another process
+		} else { // Page fault
+			process.pageFaults++;
+			frame = handlePageFault(process, pageNumber);
+			TLB.insert(asid, pageNumber, frame);
+		}
+
+		process.addresses++;
+
+		int physicalMemoryAddress = frame * SIZE + offset;
+		sink.record(logicalAddress, physicalMemoryAddress, physicalMemory[physicalMemoryAddress]);
+	}
+
+	/**
+	 * Load the page of the process into a free frame, or into the frame of
+	 * the victim chosen by the global replacement policy
+	 *
+	 * @return frame now holding the page
+	 */
+	private int handlePageFault(SimulatedProcess process, int pageNumber) throws IOException {
+		int frame;
+
+		if (framePointer < frames) {
+			frame = framePointer++;
+		} else {
+			frame = policy.victim(pageKey(process.getAsid(), pageNumber));
+
+			SimulatedProcess owner = processes[frameOwner[frame]];
+			owner.pageTable[framePage[frame]] = -1; // the victim page may
+													// belong to another
+													// process
+			owner.residentPages--;
+			TLB.invalidate(owner.getAsid(), framePage[frame]);
+		}
+
+		backingStore.readPage(pageNumber, physicalMemory, frame * SIZE, storeViews);
+
+		process.pageTable[pageNumber] = frame;
+		process.residentPages++;
+		process.peakResidentPages = Math.max(process.peakResidentPages, process.residentPages);
+		frameOwner[frame] = process.getAsid();
+		framePage[frame] = pageNumber;
+		policy.admit(frame, pageKey(process.getAsid(), pageNumber));
+
+		return frame;
+	}
+
+	/**
+	 * Page number unique over all processes, used by the policies that
+	 * remember evicted pages
+	 */
+	private static long pageKey(int asid, int pageNumber) {
+		return ((long) asid << 32) | pageNumber;
+	}
+
+	private void statistics() {
+
+		long addresses = 0;
+		long TLBHits = 0;
+		long pageFaults = 0;
+
+		for (SimulatedProcess process : processes) {
+			System.out.println("Process " + process.getAsid() + " (" + process.getTraceFileName() + ")");
+			System.out.println("  Addresses : " + process.addresses);
+			System.out.println("  Page Fault Rate : " + (float) process.pageFaults / process.addresses);
+			System.out.println("  TLB Hit Rate : " + (float) process.TLBHits / process.addresses);
+			System.out.println("  Resident Pages : " + process.residentPages + " (peak " + process.peakResidentPages
+					+ ")");
+
+			addresses += process.addresses;
+			TLBHits += process.TLBHits;
+			pageFaults += process.pageFaults;
+		}
+
+		System.out.println("Page Fault Rate : " + (float) pageFaults / addresses);
+		System.out.println("TLB Hit Rate : " + (float) TLBHits / addresses);
+		System.out.println("Context Switches : " + contextSwitches);
+		if (invalidAddresses > 0)
+			System.out.println("Addresses outside the address space : " + invalidAddresses);
+	}
+
+	private void closeProcess(SimulatedProcess process) {
+		try {
+			process.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void closeSink() {
+		if (sink != null) {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void closeBackingStore() {
+		if (backingStore != null) {
+			try {
+				backingStore.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
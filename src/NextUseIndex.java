@@ -0,0 +1,198 @@
+/**
+ * description : Next-use index of an address trace, needed by Belady's optimal replacement.
+ * 				The trace is parsed once into a temporary file of page numbers (8 byte longs), then that file is
+ * 				read backwards block by block to compute, for every access, the position of the
+ * 				next access to the same page. The positions are written to a second temporary
+ * 				file which is streamed forwards while the trace is replayed. Only a few blocks
+ * 				and one entry per distinct page are held in memory, so the trace can have
+ * 				hundreds of millions of addresses.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+public class NextUseIndex implements Closeable {
+
+	public static final int NEVER = Integer.MAX_VALUE; // next use of a page
+														// that is not accessed
+														// again
+
+	private static final int BLOCK = 1 << 16; // ints per read or write
+
+	private final File nextUseFile;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final IntBuffer ints;
+	private final int length;
+
+	private int position; // index of the next value returned by next()
+
+	private NextUseIndex(File nextUseFile, int length) throws IOException {
+		this.nextUseFile = nextUseFile;
+		this.length = length;
+
+		file = new RandomAccessFile(nextUseFile, "r");
+		channel = file.getChannel();
+		buffer = ByteBuffer.allocateDirect(BLOCK * 4);
+		ints = buffer.asIntBuffer();
+		ints.limit(0);
+		position = 0;
+	}
+
+	/**
+	 * Build the index of a trace file, read with a TraceReader
+	 *
+	 * @param traceFileName
+	 *            : file of logical addresses
+	 * @param geometry
+	 *            : layout of the addresses, addresses outside the address
+	 *            space are skipped as the translators skip them
+	 */
+	public static NextUseIndex build(String traceFileName, AddressGeometry geometry) throws IOException {
+		File pagesFile = File.createTempFile("trace-pages", ".bin");
+		File nextUseFile = File.createTempFile("trace-nextuse", ".bin");
+		pagesFile.deleteOnExit();
+		nextUseFile.deleteOnExit();
+
+		try {
+			int length = writePages(traceFileName, geometry, pagesFile);
+			writeNextUses(pagesFile, nextUseFile, length);
+			return new NextUseIndex(nextUseFile, length);
+		} catch (IOException e) {
+			nextUseFile.delete();
+			throw e;
+		} finally {
+			pagesFile.delete();
+		}
+	}
+
+	/**
+	 * Position of the next access to the page of the current access, NEVER if
+	 * the page is not accessed again. Successive calls walk the trace in order
+	 */
+	public int next() throws IOException {
+		if (position >= length)
+			return NEVER;
+
+		if (!ints.hasRemaining()) {
+			buffer.clear();
+			while (buffer.hasRemaining() && channel.read(buffer, (long) position * 4 + buffer.position()) > 0)
+				;
+			ints.clear();
+			ints.limit(buffer.position() / 4);
+		}
+
+		position++;
+		return ints.get();
+	}
+
+	/**
+	 * Continue from the given access, used when a run resumes from a snapshot
+	 *
+	 * @param access
+	 *            : position of the access whose next use next() returns
+	 */
+	public void seek(int access) {
+		position = Math.min(access, length);
+		ints.limit(0); // the buffered block is read again from the new
+						// position
+	}
+
+	/**
+	 * Number of accesses in the indexed trace
+	 */
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		file.close();
+		nextUseFile.delete();
+	}
+
+	/**
+	 * First pass: parse the trace into a file of page numbers
+	 *
+	 * @return number of accesses
+	 */
+	private static int writePages(String traceFileName, AddressGeometry geometry, File pagesFile) throws IOException {
+		ByteBuffer block = ByteBuffer.allocateDirect(BLOCK * 8);
+		LongBuffer pages = block.asLongBuffer();
+		long length = 0;
+
+		try (TraceReader trace = new TraceReader(traceFileName);
+				RandomAccessFile out = new RandomAccessFile(pagesFile, "rw")) {
+			FileChannel channel = out.getChannel();
+
+			while (trace.next()) {
+				if (!geometry.contains(trace.address()))
+					continue;
+				if (length == NEVER)
+					throw new IOException("Trace " + traceFileName + " has more than " + NEVER + " addresses");
+
+				pages.put(geometry.pageNumber(trace.address()));
+				length++;
+				if (!pages.hasRemaining())
+					flush(channel, block, pages);
+			}
+			flush(channel, block, pages);
+		}
+
+		return (int) length;
+	}
+
+	/**
+	 * Second pass: walk the page file backwards, remembering the last seen
+	 * position of every page, and write the next use of each access
+	 */
+	private static void writeNextUses(File pagesFile, File nextUseFile, int length) throws IOException {
+		ByteBuffer inBlock = ByteBuffer.allocateDirect(BLOCK * 8);
+		ByteBuffer outBlock = ByteBuffer.allocateDirect(BLOCK * 4);
+		LongBuffer in = inBlock.asLongBuffer();
+		IntBuffer out = outBlock.asIntBuffer();
+		LongIntHashMap lastSeen = new LongIntHashMap();
+
+		try (RandomAccessFile pages = new RandomAccessFile(pagesFile, "r");
+				RandomAccessFile nextUses = new RandomAccessFile(nextUseFile, "rw")) {
+			FileChannel inChannel = pages.getChannel();
+			FileChannel outChannel = nextUses.getChannel();
+
+			int end = length;
+			while (end > 0) {
+				int start = Math.max(0, end - BLOCK);
+				int count = end - start;
+
+				inBlock.clear().limit(count * 8);
+				while (inBlock.hasRemaining() && inChannel.read(inBlock, (long) start * 8 + inBlock.position()) > 0)
+					;
+
+				for (int i = count - 1; i >= 0; i--) {
+					int previous = lastSeen.put(in.get(i), start + i);
+					out.put(i, previous == LongIntHashMap.MISSING ? NEVER : previous);
+				}
+
+				outBlock.clear().limit(count * 4);
+				while (outBlock.hasRemaining())
+					outChannel.write(outBlock, (long) start * 4 + outBlock.position());
+
+				end = start;
+			}
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer block, LongBuffer longs) throws IOException {
+		block.clear().limit(longs.position() * 8);
+		while (block.hasRemaining())
+			channel.write(block);
+		longs.clear();
+	}
+}
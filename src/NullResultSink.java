@@ -0,0 +1,22 @@
+/**
+ * description : Result sink discarding everything, for runs that only need the statistics.
+ */
+
+public class NullResultSink implements ResultSink {
+
+	@Override
+	public void record(long virtualAddress, long physicalAddress, int value) {
+	}
+
+	@Override
+	public void message(String line) {
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
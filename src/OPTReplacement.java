@@ -0,0 +1,152 @@
+/**
+ * description : Belady's optimal (MIN) replacement, for offline comparison with the other
+ * 				policies. Before each access the translator passes the position of the next
+ * 				access to the same page, taken from a NextUseIndex. Resident frames are kept in
+ * 				an indexed max-heap keyed by that position, so the victim is the frame whose page
+ * 				is needed farthest in the future and every operation costs O(log frames).
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class OPTReplacement implements ReplacementPolicy {
+
+	private final int heap[]; // frames, ordered by decreasing next use
+	private final int heapIndex[]; // position of each frame in heap, -1 if
+									// absent
+	private final int nextUse[]; // next use of the page in each frame
+	private int size;
+
+	private int currentNextUse; // next use of the page being accessed
+
+	public OPTReplacement(int frames) {
+		heap = new int[frames];
+		heapIndex = new int[frames];
+		nextUse = new int[frames];
+		size = 0;
+
+		for (int i = 0; i < frames; i++)
+			heapIndex[i] = -1;
+		currentNextUse = NextUseIndex.NEVER;
+	}
+
+	/**
+	 * Give the next use of the page about to be accessed. Must be called once
+	 * per access, before touch() or admit()
+	 */
+	public void setNextUse(int position) {
+		currentNextUse = position;
+	}
+
+	@Override
+	public void touch(int frame) {
+		int i = heapIndex[frame];
+		if (i == -1)
+			return;
+
+		// the next use of a page only moves forward, so the frame can only go
+		// up in the heap
+		nextUse[frame] = currentNextUse;
+		siftUp(i);
+	}
+
+	@Override
+	public void admit(int frame, long page) {
+		nextUse[frame] = currentNextUse;
+		heap[size] = frame;
+		heapIndex[frame] = size;
+		size++;
+		siftUp(size - 1);
+	}
+
+	@Override
+	public int victim(long page) {
+		if (size == 0)
+			throw new IllegalStateException("No resident frame to replace");
+
+		int frame = heap[0];
+		removeAt(0);
+		return frame;
+	}
+
+	@Override
+	public void remove(int frame) {
+		int i = heapIndex[frame];
+		if (i != -1)
+			removeAt(i);
+	}
+
+	@Override
+	public String getName() {
+		return "OPT";
+	}
+
+	@Override
+	public void save(DataOutput out) throws IOException {
+		out.writeInt(currentNextUse);
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeInt(heap[i]);
+			out.writeInt(nextUse[heap[i]]);
+		}
+	}
+
+	@Override
+	public void restore(DataInput in) throws IOException {
+		currentNextUse = in.readInt();
+		size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			int frame = in.readInt();
+			heap[i] = frame;
+			heapIndex[frame] = i;
+			nextUse[frame] = in.readInt();
+		}
+	}
+
+	private void removeAt(int i) {
+		int frame = heap[i];
+		heapIndex[frame] = -1;
+		size--;
+
+		if (i < size) {
+			int last = heap[size];
+			heap[i] = last;
+			heapIndex[last] = i;
+			siftDown(i);
+			siftUp(heapIndex[last]);
+		}
+	}
+
+	private void siftUp(int i) {
+		int frame = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (nextUse[heap[parent]] >= nextUse[frame])
+				break;
+			heap[i] = heap[parent];
+			heapIndex[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = frame;
+		heapIndex[frame] = i;
+	}
+
+	private void siftDown(int i) {
+		int frame = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && nextUse[heap[child + 1]] > nextUse[heap[child]])
+				child++;
+			if (nextUse[heap[child]] <= nextUse[frame])
+				break;
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = frame;
+		heapIndex[frame] = i;
+	}
+}
@@ -0,0 +1,52 @@
+/**
+ * description : Codec compressing single pages for the compressed swap tier.
+ * 				lz4 only looks for repeated byte sequences and is the fastest; deflate adds
+ * 				Huffman coding and also shrinks pages whose bytes never repeat but are unevenly
+ * 				distributed, for several times the cost. The codec is chosen with the
+ * 				zswap.compressor system property, deflate by default since lz4 shrinks almost no
+ * 				page of the bundled backing store, whose integers never repeat.
+ */
+
+import java.io.IOException;
+
+public interface PageCompressor {
+
+	/**
+	 * Compress len bytes of src into dst
+	 *
+	 * @return compressed length, -1 if it would not fit in dst
+	 */
+	int compress(byte src[], int offset, int len, byte dst[]);
+
+	/**
+	 * Decompress a page compressed by compress()
+	 *
+	 * @param length
+	 *            : expected length of the page
+	 * @return decompressed length
+	 */
+	int decompress(byte src[], int offset, int len, byte dst[], int dstOffset, int length) throws IOException;
+
+	String getName();
+
+	/**
+	 * Create a codec by type
+	 *
+	 * @param type
+	 *            : lz4 or deflate
+	 */
+	static PageCompressor create(String type) {
+		switch (type.toLowerCase()) {
+		case "lz4":
+			return new LZ4PageCompressor();
+		case "deflate":
+			return new DeflatePageCompressor();
+		default:
+			throw new IllegalArgumentException("Unknown compressor: " + type);
+		}
+	}
+
+	static PageCompressor fromSystemProperties() {
+		return create(System.getProperty("zswap.compressor", "deflate"));
+	}
+}
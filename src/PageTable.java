@@ -0,0 +1,80 @@
+/**
+ * description : Mapping from the page numbers of a virtual address space to frame numbers.
+ * 				The flat table is one array entry per virtual page, which only suits small
+ * 				address spaces. The radix table allocates its levels on demand and the inverted
+ * 				table has one entry per frame, so both stay proportional to the memory actually
+ * 				used even for 48 bit address spaces. The type is chosen with the page.table
+ * 				system property (pagetable is still accepted); by default the flat table is used
+ * 				when the address space has at most 2^20 pages and the radix table otherwise.
+ */
+
+public interface PageTable {
+
+	/**
+	 * @return frame holding the page, -1 if the page is not in memory
+	 */
+	int lookup(long page);
+
+	/**
+	 * True if the page is in memory. Unlike lookup this is not a walk and is
+	 * not counted in the walk references
+	 */
+	boolean contains(long page);
+
+	/**
+	 * Record that the page is now held by the frame
+	 */
+	void map(long page, int frame);
+
+	/**
+	 * Record that the page is no longer in memory
+	 */
+	void unmap(long page);
+
+	/**
+	 * Number of table entries read by all lookups so far, one per level for a
+	 * radix walk and one per chain link for an inverted table
+	 */
+	long getWalkReferences();
+
+	/**
+	 * Memory taken by the table structures in bytes
+	 */
+	long getTableBytes();
+
+	String getName();
+
+	/**
+	 * Create a page table by type
+	 *
+	 * @param type
+	 *            : flat, radix or inverted
+	 * @param geometry
+	 *            : layout of the virtual addresses
+	 * @param frames
+	 *            : number of frames of physical memory
+	 */
+	static PageTable create(String type, AddressGeometry geometry, int frames) {
+		switch (type.toLowerCase()) {
+		case "flat":
+			return new FlatPageTable(geometry.getPageCount());
+		case "radix":
+			return new RadixPageTable(geometry.getPageBits(),
+					Integer.getInteger("page.table.levelbits", Integer.getInteger("pagetable.levelbits", 9)));
+		case "inverted":
+			return new InvertedPageTable(frames);
+		default:
+			throw new IllegalArgumentException("Unknown page table: " + type);
+		}
+	}
+
+	/**
+	 * Create the page table of the page.table system property, or of its
+	 * older name pagetable
+	 */
+	static PageTable fromSystemProperties(AddressGeometry geometry, int frames) {
+		String defaultType = geometry.getPageBits() <= 20 ? "flat" : "radix";
+		return create(System.getProperty("page.table", System.getProperty("pagetable", defaultType)), geometry,
+				frames);
+	}
+}
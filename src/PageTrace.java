@@ -0,0 +1,106 @@
+/**
+ * description : Trace held in memory as a compact array of page numbers.
+ * 				Used when the same trace is replayed many times, for example by the
+ * 				configuration sweep, so that it is parsed only once.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class PageTrace {
+
+	private final int pages[];
+	private final int length;
+	private final int maxPage;
+	private final long invalidAddresses;
+
+	private PageTrace(int pages[], int length, int maxPage, long invalidAddresses) {
+		this.pages = pages;
+		this.length = length;
+		this.maxPage = maxPage;
+		this.invalidAddresses = invalidAddresses;
+	}
+
+	/**
+	 * Read a trace file and keep the page number of every access. Addresses
+	 * outside the address space are counted and left out
+	 *
+	 * @param traceFileName
+	 *            : file of logical addresses
+	 * @param geometry
+	 *            : layout of the logical addresses
+	 */
+	public static PageTrace load(String traceFileName, AddressGeometry geometry) throws IOException {
+		int pages[] = new int[1 << 16];
+		int length = 0;
+		int maxPage = -1;
+		long invalidAddresses = 0;
+
+		try (TraceReader trace = new TraceReader(traceFileName)) {
+			while (trace.next()) {
+				if (!geometry.contains(trace.address())) {
+					invalidAddresses++;
+					continue;
+				}
+
+				long page = geometry.pageNumber(trace.address());
+				if (page > Integer.MAX_VALUE)
+					throw new IOException(traceFileName + ":" + trace.getLineNumber() + ": page number " + page
+							+ " is too large");
+				if (length == pages.length) {
+					if (length == Integer.MAX_VALUE - 8)
+						throw new IOException("Trace " + traceFileName + " is too long to be held in memory");
+					pages = Arrays.copyOf(pages, (int) Math.min(Integer.MAX_VALUE - 8, 2L * length));
+				}
+
+				pages[length++] = (int) page;
+				maxPage = Math.max(maxPage, (int) page);
+			}
+		}
+
+		return new PageTrace(pages, length, maxPage, invalidAddresses);
+	}
+
+	/**
+	 * Page number of the access at the given position
+	 */
+	public int page(int position) {
+		return pages[position];
+	}
+
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Largest page number of the trace, -1 for an empty trace
+	 */
+	public int getMaxPage() {
+		return maxPage;
+	}
+
+	/**
+	 * Addresses of the trace file outside the address space, left out of the
+	 * trace
+	 */
+	public long getInvalidAddresses() {
+		return invalidAddresses;
+	}
+
+	/**
+	 * Position of the next access to the same page for every access, or
+	 * NextUseIndex.NEVER, as needed by OPTReplacement
+	 */
+	public int[] nextUses() {
+		int nextUse[] = new int[length];
+		int lastSeen[] = new int[maxPage + 1];
+		Arrays.fill(lastSeen, NextUseIndex.NEVER);
+
+		for (int i = length - 1; i >= 0; i--) {
+			nextUse[i] = lastSeen[pages[i]];
+			lastSeen[pages[i]] = i;
+		}
+
+		return nextUse;
+	}
+}
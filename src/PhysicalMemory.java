@@ -0,0 +1,242 @@
+/**
+ * description : Physical memory of the simulator, kept off the Java heap in direct buffers.
+ * 				Memory is split into chunks of a power of two bytes, each chunk being a direct
+ * 				ByteBuffer allocated the first time one of its frames is used. Nothing is allocated
+ * 				or zeroed when the memory is created, so a memory of many gigabytes costs only the
+ * 				chunks that hold pages and puts no pressure on the garbage collector. Chunks are a
+ * 				whole number of frames, so a frame never spans two chunks.
+ * 				Addresses are long, which lifts the 2 GB limit of an array. Pages move between the
+ * 				backing store and the frames through views of the chunks, which channels read and
+ * 				write directly, without a copy through the heap.
+ * 				The size of a chunk is given by the memory.chunk system property, 2 MB by default.
+ * 				Direct memory is limited by -XX:MaxDirectMemorySize, which defaults to the maximum
+ * 				heap size.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public class PhysicalMemory {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 21;
+	private static final int MAX_CHUNK_SIZE = 1 << 30;
+
+	private final int pageSize;
+	private final int frames;
+	private final long size;
+	private final int chunkShift;
+	private final int chunkMask;
+	private final int chunkSize; // Bytes of a chunk, the last one may be
+									// smaller
+
+	private final ByteBuffer chunks[]; // null until a frame of the chunk is
+										// used
+	private final ByteBuffer views[]; // Views of the chunks whose position and
+										// limit are moved to a frame
+	// View of each chunk for each slot of a batch of frames read at once,
+	// batchViews[slot][chunk], created on first use
+	private ByteBuffer batchViews[][] = new ByteBuffer[0][];
+	private long allocatedBytes;
+
+	/**
+	 * @param frames
+	 *            : number of frames
+	 * @param pageSize
+	 *            : size of a frame in bytes, a power of two
+	 * @param chunkSize
+	 *            : bytes allocated at once, a power of two of at least a page.
+	 *            A memory smaller than a chunk is allocated in one smaller chunk
+	 */
+	public PhysicalMemory(int frames, int pageSize, int chunkSize) {
+		if (frames <= 0)
+			throw new IllegalArgumentException("Invalid frame count " + frames);
+		if (pageSize <= 0 || (pageSize & (pageSize - 1)) != 0)
+			throw new IllegalArgumentException("Invalid page size " + pageSize);
+		if (chunkSize < pageSize || chunkSize > MAX_CHUNK_SIZE || (chunkSize & (chunkSize - 1)) != 0)
+			throw new IllegalArgumentException(
+					"Invalid chunk of " + chunkSize + " bytes, must be a power of two of at least a page");
+
+		this.pageSize = pageSize;
+		this.frames = frames;
+		this.size = (long) frames * pageSize;
+		this.chunkSize = chunkSize;
+		this.chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+		this.chunkMask = chunkSize - 1;
+
+		int count = (int) ((size + chunkSize - 1) >>> chunkShift);
+		chunks = new ByteBuffer[count];
+		views = new ByteBuffer[count];
+	}
+
+	/**
+	 * Create a memory of the frames with chunks of the memory.chunk system
+	 * property
+	 */
+	public static PhysicalMemory fromSystemProperties(int frames, int pageSize) {
+		return new PhysicalMemory(frames, pageSize,
+				Math.max(pageSize, Integer.getInteger("memory.chunk", DEFAULT_CHUNK_SIZE)));
+	}
+
+	/**
+	 * Physical address of the first byte of a frame
+	 */
+	public long address(int frame) {
+		return (long) frame * pageSize;
+	}
+
+	/**
+	 * Byte at a physical address. A frame is read only after a page was
+	 * loaded into it, so its chunk exists
+	 */
+	public byte get(long address) {
+		return chunks[(int) (address >>> chunkShift)].get((int) address & chunkMask);
+	}
+
+	public void put(long address, byte value) {
+		chunks[(int) (address >>> chunkShift)].put((int) address & chunkMask, value);
+	}
+
+	/**
+	 * View of a frame, the frame lying between its position and its limit.
+	 * The view is shared by the frames of a chunk and is only valid until the
+	 * next call for a frame of the same chunk. The chunk is allocated if it is
+	 * the first use of one of its frames
+	 */
+	public ByteBuffer frame(int frame) {
+		int chunk = chunkOf(frame);
+		return moveTo(views[chunk], frame);
+	}
+
+	/**
+	 * View of a frame for one slot of a batch of frames read at once, such as
+	 * a scattering read. Every slot has its own view of each chunk, created
+	 * the first time the slot holds a frame of the chunk and reused by later
+	 * batches, so the frames of a batch never share a view and a batch
+	 * allocates nothing once its views exist. The view is valid until the
+	 * next call for the same slot
+	 *
+	 * @param frame
+	 *            : frame of the view
+	 * @param slot
+	 *            : position of the frame in the batch
+	 */
+	public ByteBuffer frame(int frame, int slot) {
+		int chunk = chunkOf(frame);
+		if (slot >= batchViews.length)
+			batchViews = Arrays.copyOf(batchViews, Math.max(slot + 1, 2 * batchViews.length));
+		if (batchViews[slot] == null)
+			batchViews[slot] = new ByteBuffer[chunks.length];
+		if (batchViews[slot][chunk] == null)
+			batchViews[slot][chunk] = chunks[chunk].duplicate();
+		return moveTo(batchViews[slot][chunk], frame);
+	}
+
+	/**
+	 * Move the position and the limit of a view of a chunk to a frame
+	 */
+	private ByteBuffer moveTo(ByteBuffer view, int frame) {
+		int offset = (int) address(frame) & chunkMask;
+		view.clear();
+		view.position(offset);
+		view.limit(offset + pageSize);
+		return view;
+	}
+
+	/**
+	 * View of a frame of its own, for reading several frames at once
+	 */
+	public ByteBuffer slice(int frame) {
+		return frame(frame).slice();
+	}
+
+	/**
+	 * Write the first frames to a channel. The frames go from the chunks to
+	 * the file without passing through the heap
+	 *
+	 * @param channel
+	 *            : channel open for writing
+	 * @param position
+	 *            : offset of the first frame in the channel
+	 * @param count
+	 *            : number of frames
+	 */
+	public void write(FileChannel channel, long position, int count) throws IOException {
+		long length = address(count);
+		for (long done = 0; done < length;) {
+			ByteBuffer buffer = range(done, length);
+			while (buffer.hasRemaining())
+				done += channel.write(buffer, position + done);
+		}
+	}
+
+	/**
+	 * Read the first frames from a channel written by write()
+	 */
+	public void read(FileChannel channel, long position, int count) throws IOException {
+		long length = address(count);
+		for (long done = 0; done < length;) {
+			ByteBuffer buffer = range(done, length);
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, position + done);
+				if (read < 0)
+					throw new IOException("Physical memory truncated at byte " + done + " of " + length);
+				done += read;
+			}
+		}
+	}
+
+	/**
+	 * View of the bytes from an address to the end of its chunk or to the
+	 * limit, whichever comes first
+	 */
+	private ByteBuffer range(long address, long limit) {
+		int chunk = chunkOf((int) (address / pageSize));
+		ByteBuffer view = views[chunk];
+		int offset = (int) address & chunkMask;
+		view.clear();
+		view.position(offset);
+		view.limit((int) Math.min(view.capacity(), offset + limit - address));
+		return view;
+	}
+
+	/**
+	 * Chunk of a frame, allocated on its first use
+	 */
+	private int chunkOf(int frame) {
+		if (frame < 0 || frame >= frames)
+			throw new IndexOutOfBoundsException("Invalid frame " + frame);
+
+		int chunk = (int) (address(frame) >>> chunkShift);
+		if (chunks[chunk] == null) {
+			long start = (long) chunk << chunkShift;
+			chunks[chunk] = ByteBuffer.allocateDirect((int) Math.min(chunkSize, size - start));
+			views[chunk] = chunks[chunk].duplicate();
+			allocatedBytes += chunks[chunk].capacity();
+		}
+		return chunk;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Size of the memory in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Bytes of direct memory allocated so far
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+}
@@ -0,0 +1,159 @@
+/**
+ * description : Read-ahead of pages on a page fault.
+ * 				The prefetcher watches the pages that fault and detects a constant stride between
+ * 				them, a stride of one being a sequential scan. Once the same stride has been seen
+ * 				twice in a row, a fault also loads the next pages along the stride.
+ * 				The depth of the read-ahead adapts to the outcome: it doubles every time a
+ * 				prefetched page is referenced and halves every time one is evicted unused.
+ * 				Prefetched frames are remembered in a bitmap until their first reference or their
+ * 				eviction, which gives the accuracy and the coverage of the prefetcher.
+ */
+
+public class Prefetcher {
+
+	private final int maxDepth;
+
+	private long lastFault; // page of the previous fault
+	private long stride; // difference between the last two faults
+	private int confidence; // times in a row the stride was seen
+	private int depth; // pages read ahead when the stride is confirmed
+
+	private long prefetchedFrames[]; // frames holding a prefetched page not
+										// referenced yet, one bit per frame
+
+	// Statistics
+	private long issued; // pages read ahead
+	private long useful; // prefetched pages referenced before eviction
+	private long wasted; // prefetched pages evicted without reference
+	private long demandFaults; // faults the prefetcher did not avoid
+
+	/**
+	 * @param frames
+	 *            : number of frames in physical memory
+	 * @param maxDepth
+	 *            : largest number of pages read ahead on a fault
+	 */
+	public Prefetcher(int frames, int maxDepth) {
+		if (maxDepth <= 0)
+			throw new IllegalArgumentException("Invalid prefetch depth " + maxDepth);
+
+		// never read ahead more than a quarter of memory, the pages would
+		// evict each other
+		this.maxDepth = Math.max(1, Math.min(maxDepth, frames / 4));
+		this.depth = Math.min(2, this.maxDepth);
+		this.lastFault = -1;
+
+		prefetchedFrames = new long[(frames + 63) >>> 6];
+	}
+
+	/**
+	 * Create the prefetcher asked for by the prefetch system property, which
+	 * gives the largest read-ahead depth
+	 *
+	 * @return null when prefetching is off, the default
+	 */
+	public static Prefetcher fromSystemProperties(int frames) {
+		int maxDepth = Integer.getInteger("prefetch", 0);
+		return maxDepth > 0 ? new Prefetcher(frames, maxDepth) : null;
+	}
+
+	/**
+	 * Record a page fault and predict the pages to read ahead with the page
+	 *
+	 * @param page
+	 *            : page that caused the fault
+	 * @return number of pages predicted, read them with getPredicted(). The
+	 *         caller skips the pages already resident or outside the address
+	 *         space
+	 */
+	public int fault(long page) {
+		demandFaults++;
+
+		long delta = page - lastFault;
+		if (lastFault != -1 && delta == stride && delta != 0) {
+			confidence++;
+		} else {
+			stride = delta;
+			confidence = 0;
+		}
+		lastFault = page;
+
+		return confidence == 0 ? 0 : depth;
+	}
+
+	/**
+	 * Page predicted by the last call to fault()
+	 *
+	 * @param index
+	 *            : index of the prediction, from 0 to the returned count
+	 */
+	public long getPredicted(int index) {
+		return lastFault + stride * (index + 1);
+	}
+
+	/**
+	 * A predicted page has been loaded into the frame
+	 */
+	public void prefetched(int frame) {
+		prefetchedFrames[frame >>> 6] |= 1L << frame;
+		issued++;
+	}
+
+	/**
+	 * The page of the frame has been referenced. The first reference of a
+	 * prefetched page is a fault avoided
+	 */
+	public void referenced(int frame) {
+		long bit = 1L << frame;
+		if ((prefetchedFrames[frame >>> 6] & bit) != 0) {
+			prefetchedFrames[frame >>> 6] &= ~bit;
+			useful++;
+			depth = Math.min(depth * 2, maxDepth);
+			// the scan goes on past the prefetched pages, so the next fault
+			// keeps the stride
+			lastFault += stride;
+		}
+	}
+
+	/**
+	 * The page of the frame is being replaced
+	 */
+	public void evicted(int frame) {
+		long bit = 1L << frame;
+		if ((prefetchedFrames[frame >>> 6] & bit) != 0) {
+			prefetchedFrames[frame >>> 6] &= ~bit;
+			wasted++;
+			depth = Math.max(depth / 2, 1);
+		}
+	}
+
+	/**
+	 * Fraction of the prefetched pages that were referenced
+	 */
+	public float getAccuracy() {
+		return issued == 0 ? 0 : (float) useful / issued;
+	}
+
+	/**
+	 * Fraction of the faults that the prefetcher avoided
+	 */
+	public float getCoverage() {
+		return useful + demandFaults == 0 ? 0 : (float) useful / (useful + demandFaults);
+	}
+
+	public long getIssued() {
+		return issued;
+	}
+
+	public long getUseful() {
+		return useful;
+	}
+
+	public long getWasted() {
+		return wasted;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * description : Multi-level (radix) page table, like the x86-64 four level tables.
+ * 				The page number is split in groups of levelBits bits, one per level, and each
+ * 				level is a node of 2^levelBits entries. Nodes are only allocated when a page
+ * 				below them is mapped, so the table grows with the touched pages and not with the
+ * 				address space. All nodes live in one int array: an interior entry holds the index
+ * 				of its child node and a leaf entry holds the frame number plus one, 0 meaning
+ * 				absent in both cases. Node 0 is the root.
+ */
+
+import java.util.Arrays;
+
+public class RadixPageTable implements PageTable {
+
+	private final int levels;
+	private final int levelBits;
+	private final int width; // entries per node
+	private final int mask;
+
+	private int nodes[]; // node n holds entries n * width to (n + 1) * width - 1
+	private int nodeCount;
+	private long walkReferences;
+
+	/**
+	 * @param pageBits
+	 *            : number of bits of a page number
+	 * @param levelBits
+	 *            : bits translated by each level
+	 */
+	public RadixPageTable(int pageBits, int levelBits) {
+		if (levelBits <= 0 || levelBits > 20)
+			throw new IllegalArgumentException("Invalid bits per level " + levelBits);
+
+		this.levelBits = levelBits;
+		this.levels = Math.max(1, (pageBits + levelBits - 1) / levelBits);
+		this.width = 1 << levelBits;
+		this.mask = width - 1;
+
+		nodes = new int[width * 8];
+		nodeCount = 1; // the root
+	}
+
+	@Override
+	public int lookup(long page) {
+		int node = 0;
+
+		for (int level = levels - 1; level > 0; level--) {
+			walkReferences++;
+			node = nodes[node * width + (int) ((page >>> (level * levelBits)) & mask)];
+			if (node == 0)
+				return -1;
+		}
+
+		walkReferences++;
+		return nodes[node * width + (int) (page & mask)] - 1;
+	}
+
+	@Override
+	public boolean contains(long page) {
+		int node = 0;
+
+		for (int level = levels - 1; level > 0; level--) {
+			node = nodes[node * width + (int) ((page >>> (level * levelBits)) & mask)];
+			if (node == 0)
+				return false;
+		}
+
+		return nodes[node * width + (int) (page & mask)] != 0;
+	}
+
+	@Override
+	public void map(long page, int frame) {
+		int node = 0;
+
+		for (int level = levels - 1; level > 0; level--) {
+			int entry = node * width + (int) ((page >>> (level * levelBits)) & mask);
+			if (nodes[entry] == 0) {
+				int child = allocateNode(); // may replace the nodes array
+				nodes[entry] = child;
+			}
+			node = nodes[entry];
+		}
+
+		nodes[node * width + (int) (page & mask)] = frame + 1;
+	}
+
+	@Override
+	public void unmap(long page) {
+		int node = 0;
+
+		for (int level = levels - 1; level > 0; level--) {
+			node = nodes[node * width + (int) ((page >>> (level * levelBits)) & mask)];
+			if (node == 0)
+				return;
+		}
+
+		nodes[node * width + (int) (page & mask)] = 0;
+	}
+
+	@Override
+	public long getWalkReferences() {
+		return walkReferences;
+	}
+
+	@Override
+	public long getTableBytes() {
+		return 4L * nodeCount * width;
+	}
+
+	@Override
+	public String getName() {
+		return levels + "-level radix";
+	}
+
+	private int allocateNode() {
+		if ((long) (nodeCount + 1) * width > nodes.length) {
+			long size = Math.max((long) (nodeCount + 1) * width, 2L * nodes.length);
+			if (size > Integer.MAX_VALUE - 8)
+				throw new IllegalStateException("Radix page table is full");
+			nodes = Arrays.copyOf(nodes, (int) size);
+		}
+		return nodeCount++;
+	}
+}
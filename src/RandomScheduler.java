@@ -0,0 +1,50 @@
+/**
+ * description : Random scheduler, every quantum goes to a process drawn uniformly among the
+ * 				unfinished ones. The draw is seeded so runs can be reproduced.
+ */
+
+public class RandomScheduler implements Scheduler {
+
+	private final int quantum;
+	private long seed;
+
+	public RandomScheduler(int quantum, long seed) {
+		if (quantum <= 0)
+			throw new IllegalArgumentException("Invalid quantum " + quantum);
+		this.quantum = quantum;
+		this.seed = seed;
+	}
+
+	@Override
+	public int next(int current, boolean finished[]) {
+		int runnable = 0;
+		for (int i = 0; i < finished.length; i++) {
+			if (!finished[i])
+				runnable++;
+		}
+		if (runnable == 0)
+			return -1;
+
+		int pick = (int) Long.remainderUnsigned(nextRandom(), runnable);
+		for (int i = 0; i < finished.length; i++) {
+			if (!finished[i] && pick-- == 0)
+				return i;
+		}
+		return -1;
+	}
+
+	@Override
+	public int getQuantum() {
+		return quantum;
+	}
+
+	/**
+	 * SplitMix64 step
+	 */
+	private long nextRandom() {
+		long z = (seed += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * description : Page replacement policy over the frames of physical memory.
+ * 				The translator tells the policy about every reference to a resident page and
+ * 				every page it loads, and asks it for a victim frame when physical memory is full.
+ * 				Implementations keep their bookkeeping in arrays indexed by frame number so that
+ * 				touch, admit and victim run in constant time whatever the number of frames.
+ * 				The state of a policy can be saved to a snapshot and restored into a new policy of
+ * 				the same type and size.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public interface ReplacementPolicy {
+
+	/**
+	 * The resident page held by the frame has been referenced
+	 */
+	void touch(int frame);
+
+	/**
+	 * A page has been loaded into a free frame or into the frame returned by
+	 * victim()
+	 *
+	 * @param frame
+	 *            : frame now holding the page
+	 * @param page
+	 *            : page number of the page
+	 */
+	void admit(int frame, long page);
+
+	/**
+	 * Choose the frame to be replaced to make room for a page. The returned
+	 * frame is no longer tracked by the policy until it is admitted again
+	 *
+	 * @param page
+	 *            : page number of the page that caused the fault
+	 * @return frame number of the victim
+	 */
+	int victim(long page);
+
+	/**
+	 * Stop tracking a frame that was freed without being chosen as a victim
+	 */
+	void remove(int frame);
+
+	String getName();
+
+	/**
+	 * Write the replacement state of the frames
+	 */
+	void save(DataOutput out) throws IOException;
+
+	/**
+	 * Replace the state of a policy that tracks no frame yet with the state
+	 * written by save() from a policy of the same type and frame count
+	 */
+	void restore(DataInput in) throws IOException;
+
+	/**
+	 * Create a policy by name
+	 *
+	 * @param name
+	 *            : lru, fifo, clock, lfu, arc, 2q or opt. opt needs the
+	 *            next use of every access, see OPTReplacement
+	 * @param frames
+	 *            : number of frames in physical memory
+	 */
+	static ReplacementPolicy create(String name, int frames) {
+		switch (name.toLowerCase()) {
+		case "lru":
+			return new LRUReplacement(frames);
+		case "fifo":
+			return new FIFOReplacement(frames);
+		case "clock":
+			return new ClockReplacement(frames);
+		case "lfu":
+			return new LFUReplacement(frames);
+		case "arc":
+			return new ARCReplacement(frames);
+		case "2q":
+			return new TwoQueueReplacement(frames);
+		case "opt":
+			return new OPTReplacement(frames);
+		default:
+			throw new IllegalArgumentException("Unknown replacement policy: " + name);
+		}
+	}
+
+	/**
+	 * Create the policy named by the policy system property, LRU by default
+	 */
+	static ReplacementPolicy fromSystemProperties(int frames) {
+		return create(System.getProperty("policy", "lru"), frames);
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * description : Destination of the translation results.
+ * 				The translators hand every translated address to a sink instead of printing a
+ * 				concatenated String for it. The sink is chosen with the output system property:
+ * 					text   : the "Virtual address: ... Physical address: ... Value: ..." lines (default)
+ * 					binary : fixed size binary records
+ * 					null   : nothing, for runs that only need the statistics
+ * 				output.file names the file to write, standard output by default, and
+ * 				output.every=N keeps only every Nth record.
+ */
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface ResultSink extends Closeable {
+
+	/**
+	 * Write the result of one translation. Must not allocate
+	 *
+	 * @param virtualAddress
+	 *            : logical address read from the trace
+	 * @param physicalAddress
+	 *            : translated address in physical memory
+	 * @param value
+	 *            : signed byte stored at the physical address
+	 */
+	void record(long virtualAddress, long physicalAddress, int value) throws IOException;
+
+	/**
+	 * Write an informational line between the records. Sinks that only store
+	 * records ignore it
+	 */
+	void message(String line) throws IOException;
+
+	/**
+	 * Push the buffered output to its destination
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * Create the sink described by the output, output.file and output.every
+	 * system properties
+	 */
+	static ResultSink fromSystemProperties() throws IOException {
+		String type = System.getProperty("output", "text").toLowerCase();
+		String fileName = System.getProperty("output.file");
+		long every = Long.getLong("output.every", 1);
+
+		if (!type.equals("text") && !type.equals("binary") && !type.equals("null"))
+			throw new IllegalArgumentException("Unknown output type: " + type);
+
+		ResultSink sink;
+		if (type.equals("null")) {
+			sink = new NullResultSink();
+		} else {
+			// standard output is written through its file descriptor so that
+			// the records bypass the synchronized System.out, and it is only
+			// flushed, never closed, when the sink is closed
+			boolean toFile = fileName != null;
+			OutputStream out = toFile ? new FileOutputStream(fileName) : new FileOutputStream(FileDescriptor.out);
+
+			if (type.equals("text"))
+				sink = new TextResultSink(out, toFile);
+			else
+				sink = new BinaryResultSink(out, toFile);
+		}
+
+		return every > 1 ? new SampledResultSink(sink, every) : sink;
+	}
+}
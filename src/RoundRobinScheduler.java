@@ -0,0 +1,31 @@
+/**
+ * description : Round-robin scheduler, processes take turns in index order.
+ */
+
+public class RoundRobinScheduler implements Scheduler {
+
+	private final int quantum;
+
+	public RoundRobinScheduler(int quantum) {
+		if (quantum <= 0)
+			throw new IllegalArgumentException("Invalid quantum " + quantum);
+		this.quantum = quantum;
+	}
+
+	@Override
+	public int next(int current, boolean finished[]) {
+		for (int i = 1; i <= finished.length; i++) {
+			int candidate = (current + i) % finished.length;
+			if (candidate < 0)
+				candidate += finished.length;
+			if (!finished[candidate])
+				return candidate;
+		}
+		return -1;
+	}
+
+	@Override
+	public int getQuantum() {
+		return quantum;
+	}
+}
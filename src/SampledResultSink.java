@@ -0,0 +1,52 @@
+/**
+ * description : Result sink keeping only every Nth record.
+ * 				The kept records, and every message, are passed on to another sink. Useful to
+ * 				spot check long runs without writing every translation.
+ */
+
+import java.io.IOException;
+
+public class SampledResultSink implements ResultSink {
+
+	private final ResultSink target;
+	private final long every;
+	private long countdown;
+
+	/**
+	 * @param target
+	 *            : sink receiving the sampled records
+	 * @param every
+	 *            : keep one record out of every
+	 */
+	public SampledResultSink(ResultSink target, long every) {
+		if (every <= 0)
+			throw new IllegalArgumentException("Invalid sampling interval " + every);
+
+		this.target = target;
+		this.every = every;
+		countdown = 1; // the first record is kept
+	}
+
+	@Override
+	public void record(long virtualAddress, long physicalAddress, int value) throws IOException {
+		if (--countdown == 0) {
+			countdown = every;
+			target.record(virtualAddress, physicalAddress, value);
+		}
+	}
+
+	@Override
+	public void message(String line) throws IOException {
+		target.message(line);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		target.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		target.close();
+	}
+}
@@ -0,0 +1,35 @@
+/**
+ * description : Chooses which process runs next in the multi-process simulation.
+ * 				The simulator replays the trace of the running process for one quantum of
+ * 				accesses, or until that trace ends, and then asks the scheduler for the next
+ * 				process. The scheduler is chosen with the sched system property (rr or random)
+ * 				and the quantum with sched.quantum.
+ */
+
+public interface Scheduler {
+
+	/**
+	 * @param current
+	 *            : index of the process that just ran, -1 at the start
+	 * @param finished
+	 *            : finished[i] is true once the trace of process i has ended
+	 * @return index of the next process, -1 when every process has finished
+	 */
+	int next(int current, boolean finished[]);
+
+	/**
+	 * Number of accesses a process runs before the next context switch
+	 */
+	int getQuantum();
+
+	static Scheduler fromSystemProperties() {
+		String type = System.getProperty("sched", "rr").toLowerCase();
+		int quantum = Integer.getInteger("sched.quantum", 10);
+
+		if (type.equals("rr"))
+			return new RoundRobinScheduler(quantum);
+		if (type.equals("random"))
+			return new RandomScheduler(quantum, Long.getLong("sched.seed", 1));
+		throw new IllegalArgumentException("Unknown scheduler: " + type);
+	}
+}
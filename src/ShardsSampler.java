@@ -0,0 +1,302 @@
+/**
+ * description : Approximate LRU stack distance histogram of a trace, sampled by page as in SHARDS.
+ * 				Each page is hashed to a value below 2^24 and only the references to pages whose
+ * 				value is below a threshold T are given to a StackDistanceTracker, a fraction
+ * 				R = T / 2^24 of the pages. The distances measured among the sampled pages are
+ * 				divided by R to estimate the distances in the whole trace.
+ * 				Memory is fixed: at most a given number of pages are kept in the sample. When a new
+ * 				page would exceed it, the pages with the largest hash value leave the sample and the
+ * 				threshold drops to that value, so R adapts to the number of distinct pages of the
+ * 				trace. Every sampled reference counts for 1 / R references of the trace at the rate
+ * 				of the moment, which scales the counts gathered before a drop down to the new rate
+ * 				without going over the histogram.
+ * 				The histogram has a fixed number of buckets whose width doubles, merging them by
+ * 				pairs, when a distance does not fit. At the end the difference between the number of
+ * 				references N and the estimated one is added to the first bucket (SHARDS_adj), which
+ * 				corrects for hot pages falling in or out of the sample.
+ * 				The sampled pages are also split by other bits of their hash into 16 groups, each
+ * 				with its own histogram, and each group alone estimates the curve from a sixteenth
+ * 				of the sample. The spread of the 16 curves gives the sampling error of the estimate,
+ * 				hot pages included. It is not a bound on the actual error: the bias of rescaling
+ * 				distances across threshold drops and of the SHARDS_adj correction is shared by the
+ * 				groups and does not show in their spread.
+ */
+
+import java.util.Arrays;
+
+public class ShardsSampler {
+
+	private static final int HASH_BITS = 24;
+	private static final int HASH_RANGE = 1 << HASH_BITS; // P of SHARDS
+	private static final int GROUPS = 16; // Groups of pages estimating the
+											// error
+
+	private final int maxPages; // Sample size, the memory budget
+	private final StackDistanceTracker tracker;
+
+	private int threshold = HASH_RANGE; // Pages with a hash below it are
+										// sampled
+
+	// Max-heap of the sampled pages by hash value, to find the pages that
+	// leave the sample when the threshold drops
+	private final int heapHash[];
+	private final long heapPage[];
+	private int heapSize;
+
+	private final double buckets[][]; // Estimated references by group and
+										// distance, bucket b holding distances
+										// (b * width, (b + 1) * width]
+	private int bucketCount; // Buckets in use
+	private long width = 1;
+	private final double cold[] = new double[GROUPS]; // Estimated first
+														// references to a page
+
+	private long references; // All references, sampled or not
+	private long sampledReferences;
+	private long thresholdDrops;
+
+	/**
+	 * @param maxPages
+	 *            : pages kept in the sample
+	 * @param maxBuckets
+	 *            : buckets of the histogram, a power of two
+	 */
+	public ShardsSampler(int maxPages, int maxBuckets) {
+		if (maxPages < 1)
+			throw new IllegalArgumentException("Invalid sample of " + maxPages + " pages");
+		if (maxBuckets < 2 || (maxBuckets & (maxBuckets - 1)) != 0)
+			throw new IllegalArgumentException("Histogram of " + maxBuckets + " buckets, must be a power of two");
+
+		this.maxPages = maxPages;
+		tracker = new StackDistanceTracker(Math.min(1 << 16, 2 * maxPages));
+		heapHash = new int[maxPages + 1];
+		heapPage = new long[maxPages + 1];
+		buckets = new double[GROUPS][maxBuckets];
+	}
+
+	/**
+	 * Create the sampler asked for by the mrc.shards system property, the
+	 * number of pages kept in the sample, with mrc.shards.buckets buckets
+	 *
+	 * @return null when the property is not set or is 0
+	 */
+	public static ShardsSampler fromSystemProperties() {
+		int maxPages = Integer.getInteger("mrc.shards", 0);
+		return maxPages > 0 ? new ShardsSampler(maxPages, Integer.getInteger("mrc.shards.buckets", 4096)) : null;
+	}
+
+	/**
+	 * Record a reference to the page. Every reference counts in N and in the
+	 * SHARDS_adj correction, so the caller leaves out the addresses outside
+	 * the address space
+	 */
+	public void access(long page) {
+		references++;
+		long mixed = mix(page);
+		int hash = (int) (mixed >>> (64 - HASH_BITS));
+		if (hash >= threshold)
+			return;
+
+		sampledReferences++;
+		int group = (int) mixed & (GROUPS - 1);
+		long distance = tracker.access(page);
+		double weight = (double) HASH_RANGE / threshold; // 1 / R
+		if (distance == StackDistanceTracker.COLD) {
+			cold[group] += weight;
+			push(hash, page);
+			if (heapSize > maxPages)
+				dropThreshold();
+		} else {
+			count(Math.max(1, Math.round(distance * weight)), weight, group);
+		}
+	}
+
+	/**
+	 * Remove the pages with the largest hash from the sample and lower the
+	 * threshold to that hash
+	 */
+	private void dropThreshold() {
+		int largest = heapHash[0];
+		while (heapSize > 0 && heapHash[0] == largest)
+			tracker.remove(pop());
+
+		threshold = largest;
+		thresholdDrops++;
+	}
+
+	/**
+	 * Add references to the bucket of a distance, doubling the width of the
+	 * buckets until it fits
+	 */
+	private void count(long distance, double references, int group) {
+		int maxBuckets = buckets[0].length;
+		long bucket = (distance - 1) / width;
+		while (bucket >= maxBuckets) {
+			for (double histogram[] : buckets) {
+				for (int b = 0; b < maxBuckets / 2; b++)
+					histogram[b] = histogram[2 * b] + histogram[2 * b + 1];
+				Arrays.fill(histogram, maxBuckets / 2, maxBuckets, 0);
+			}
+			bucketCount = (bucketCount + 1) / 2;
+			width *= 2;
+			bucket = (distance - 1) / width;
+		}
+		buckets[group][(int) bucket] += references;
+		bucketCount = Math.max(bucketCount, (int) bucket + 1);
+	}
+
+	/**
+	 * Sampling rate R, the fraction of the pages in the sample
+	 */
+	public double getRate() {
+		return (double) threshold / HASH_RANGE;
+	}
+
+	/**
+	 * Estimated references of the whole trace with a distance in a bucket,
+	 * with the SHARDS_adj correction in the first bucket
+	 */
+	public double getBucket(int bucket) {
+		double references = 0;
+		for (int group = 0; group < GROUPS; group++)
+			references += getGroupBucket(group, bucket);
+		return references;
+	}
+
+	/**
+	 * Estimated first references to a page in the whole trace
+	 */
+	public double getColdReferences() {
+		double references = 0;
+		for (int group = 0; group < GROUPS; group++)
+			references += cold[group];
+		return references;
+	}
+
+	/**
+	 * Sampling error of the page fault rate at the largest size of every
+	 * bucket, two standard errors of the mean of the estimates of the groups.
+	 * The bias common to all groups is not included
+	 */
+	public double[] getSamplingErrors() {
+		double errors[] = new double[getBucketCount()];
+		double hits[] = new double[GROUPS];
+
+		for (int b = 0; b < errors.length; b++) {
+			double sum = 0, squares = 0;
+			for (int group = 0; group < GROUPS; group++) {
+				hits[group] += getGroupBucket(group, b);
+				double rate = Math.max(0, Math.min(1, 1 - GROUPS * hits[group] / references));
+				sum += rate;
+				squares += rate * rate;
+			}
+			double mean = sum / GROUPS;
+			double variance = Math.max(0, (squares - GROUPS * mean * mean) / (GROUPS - 1));
+			errors[b] = 2 * Math.sqrt(variance / GROUPS);
+		}
+		return errors;
+	}
+
+	/**
+	 * Estimated references of a group, the group standing for 1 / GROUPS of
+	 * the trace in its SHARDS_adj correction
+	 */
+	private double getGroupBucket(int group, int bucket) {
+		if (bucket != 0)
+			return buckets[group][bucket];
+
+		double estimated = cold[group];
+		for (int b = 0; b < bucketCount; b++)
+			estimated += buckets[group][b];
+		return buckets[group][0] + (double) references / GROUPS - estimated;
+	}
+
+	public int getBucketCount() {
+		return Math.max(1, bucketCount);
+	}
+
+	/**
+	 * Distances covered by a bucket
+	 */
+	public long getBucketWidth() {
+		return width;
+	}
+
+	public long getReferences() {
+		return references;
+	}
+
+	public long getSampledReferences() {
+		return sampledReferences;
+	}
+
+	/**
+	 * Pages currently in the sample
+	 */
+	public int getSampledPages() {
+		return heapSize;
+	}
+
+	/**
+	 * Estimated distinct pages of the whole trace
+	 */
+	public double getEstimatedPages() {
+		return heapSize / getRate();
+	}
+
+	public long getThresholdDrops() {
+		return thresholdDrops;
+	}
+
+	/**
+	 * Uniform hash of a page number, the finalizer of SplitMix64. The high
+	 * bits are compared with the threshold and the low bits give the group
+	 */
+	private static long mix(long page) {
+		long z = page * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private void push(int hash, long page) {
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (heapHash[parent] >= hash)
+				break;
+			heapHash[i] = heapHash[parent];
+			heapPage[i] = heapPage[parent];
+			i = parent;
+		}
+		heapHash[i] = hash;
+		heapPage[i] = page;
+	}
+
+	/**
+	 * Remove the page with the largest hash from the heap
+	 */
+	private long pop() {
+		long top = heapPage[0];
+		int hash = heapHash[--heapSize];
+		long page = heapPage[heapSize];
+
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize)
+				break;
+			if (child + 1 < heapSize && heapHash[child + 1] > heapHash[child])
+				child++;
+			if (heapHash[child] <= hash)
+				break;
+			heapHash[i] = heapHash[child];
+			heapPage[i] = heapPage[child];
+			i = child;
+		}
+		heapHash[i] = hash;
+		heapPage[i] = page;
+
+		return top;
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * description : One process of the multi-process simulation.
+ * 				A process owns its trace, its page table and its statistics. Its ASID tags its
+ * 				entries in the shared TLB and the frames it holds in the shared physical memory.
+ */
+
+import java.io.IOException;
+
+public class SimulatedProcess {
+
+	private final int asid;
+	private final String traceFileName;
+	private TraceReader trace = null;
+
+	int pageTable[]; // frame of each page, -1 if the page is not in memory
+
+	long addresses; // logical addresses translated
+	long TLBHits;
+	long pageFaults;
+	int residentPages; // pages currently in physical memory
+	int peakResidentPages;
+
+	/**
+	 * @param asid
+	 *            : address space ID of the process
+	 * @param traceFileName
+	 *            : file of logical addresses accessed by the process
+	 * @param pages
+	 *            : number of pages in its virtual address space
+	 */
+	public SimulatedProcess(int asid, String traceFileName, int pages) {
+		this.asid = asid;
+		this.traceFileName = traceFileName;
+
+		pageTable = new int[pages];
+		for (int i = 0; i < pages; i++)
+			pageTable[i] = -1;
+	}
+
+	public void open() throws IOException {
+		trace = new TraceReader(traceFileName);
+	}
+
+	/**
+	 * Advance to the next access of the process
+	 *
+	 * @return false when the trace has ended
+	 */
+	public boolean next() throws IOException {
+		return trace.next();
+	}
+
+	/**
+	 * Logical address of the current access
+	 */
+	public long address() {
+		return trace.address();
+	}
+
+	public void close() throws IOException {
+		if (trace != null) {
+			trace.close();
+			trace = null;
+		}
+	}
+
+	public int getAsid() {
+		return asid;
+	}
+
+	public String getTraceFileName() {
+		return traceFileName;
+	}
+}
@@ -0,0 +1,273 @@
+/**
+ * description : Live instrumentation of a translation engine.
+ * 				The engine counts TLB hits, page table hits, page faults, evictions and dirty
+ * 				write-backs and records the latency of every translation in the histogram of its
+ * 				path: TLB hit, page walk or fault service.
+ * 				The metrics are exposed over JMX and can be printed as a snapshot line at a fixed
+ * 				interval. The rates and percentiles of a snapshot line cover the interval since the
+ * 				previous line, so a burst of page faults shows up while the trace is still running.
+ */
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class SimulatorMetrics implements SimulatorMetricsMXBean, Closeable {
+
+	// Indexes of the counters
+	private static final int TLB_HITS = 0;
+	private static final int PAGE_TABLE_HITS = 1;
+	private static final int PAGE_FAULTS = 2;
+	private static final int EVICTIONS = 3;
+	private static final int DIRTY_WRITE_BACKS = 4;
+	private static final int COUNTERS = 5;
+
+	private final String name;
+	// Counters and histograms are written by the engine thread only
+	private final AtomicLongArray counters = new AtomicLongArray(COUNTERS);
+	private final LatencyHistogram TLBHitLatency = new LatencyHistogram();
+	private final LatencyHistogram pageWalkLatency = new LatencyHistogram();
+	private final LatencyHistogram faultServiceLatency = new LatencyHistogram();
+
+	private ObjectName objectName = null; // set while registered with JMX
+	private ScheduledExecutorService reporter = null;
+
+	// State of the previous snapshot line, used by the reporter thread only
+	private long lastTime;
+	private long lastCounters[] = new long[COUNTERS];
+	private long lastBuckets[][] = new long[3][LatencyHistogram.BUCKETS];
+
+	/**
+	 * @param name
+	 *            : name of the run, used in the JMX object name
+	 */
+	public SimulatorMetrics(String name) {
+		this.name = name;
+		this.lastTime = System.nanoTime();
+	}
+
+	/**
+	 * Create the metrics asked for by the system properties: metrics=true
+	 * registers them with JMX and metrics.interval prints a snapshot line on
+	 * the error stream every given number of milliseconds
+	 *
+	 * @return null when neither property is set
+	 */
+	public static SimulatorMetrics fromSystemProperties(String name) {
+		long interval = Long.getLong("metrics.interval", 0);
+		if (!Boolean.getBoolean("metrics") && interval <= 0)
+			return null;
+
+		SimulatorMetrics metrics = new SimulatorMetrics(name);
+		metrics.register();
+		if (interval > 0)
+			metrics.startReporter(interval, System.err);
+		return metrics;
+	}
+
+	/**
+	 * A translation was resolved by the TLB
+	 */
+	public void TLBHit(long nanos) {
+		increment(TLB_HITS);
+		TLBHitLatency.record(nanos);
+	}
+
+	/**
+	 * A translation was resolved by the page table after a TLB miss
+	 */
+	public void pageWalk(long nanos) {
+		increment(PAGE_TABLE_HITS);
+		pageWalkLatency.record(nanos);
+	}
+
+	/**
+	 * A translation caused a page fault
+	 */
+	public void pageFault(long nanos) {
+		increment(PAGE_FAULTS);
+		faultServiceLatency.record(nanos);
+	}
+
+	public void eviction() {
+		increment(EVICTIONS);
+	}
+
+	public void dirtyWriteBack() {
+		increment(DIRTY_WRITE_BACKS);
+	}
+
+	private void increment(int counter) {
+		counters.lazySet(counter, counters.get(counter) + 1);
+	}
+
+	/**
+	 * Register the metrics with the platform MBean server. Registration
+	 * errors are reported and the run goes on without JMX
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName candidate = new ObjectName("vmm:type=SimulatorMetrics,name=" + ObjectName.quote(name));
+			server.registerMBean(this, candidate);
+			objectName = candidate;
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Print a snapshot line at a fixed rate from a daemon thread
+	 *
+	 * @param intervalMillis
+	 *            : time between two lines
+	 * @param out
+	 *            : stream receiving the lines
+	 */
+	public void startReporter(long intervalMillis, final PrintStream out) {
+		reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-reporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		reporter.scheduleAtFixedRate(() -> out.println(snapshotLine()), intervalMillis, intervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Line describing the interval since the previous line: translations per
+	 * second, TLB hit and page fault rates, and the 99th percentile of every
+	 * path
+	 */
+	public synchronized String snapshotLine() {
+		long now = System.nanoTime();
+		long delta[] = new long[COUNTERS];
+		for (int i = 0; i < COUNTERS; i++) {
+			long value = counters.get(i);
+			delta[i] = value - lastCounters[i];
+			lastCounters[i] = value;
+		}
+		long translations = delta[TLB_HITS] + delta[PAGE_TABLE_HITS] + delta[PAGE_FAULTS];
+		double seconds = (now - lastTime) / 1e9;
+		lastTime = now;
+
+		return String.format("[metrics %s] %d translations (%.0f/s), TLB hit rate %.4f, page fault rate %.4f, "
+				+ "%d evictions, %d dirty write-backs, p99 TLB hit %d ns, page walk %d ns, fault service %d ns", name,
+				translations, translations / seconds, rate(delta[TLB_HITS], translations),
+				rate(delta[PAGE_FAULTS], translations), delta[EVICTIONS], delta[DIRTY_WRITE_BACKS],
+				intervalPercentile(TLBHitLatency, lastBuckets[0]), intervalPercentile(pageWalkLatency, lastBuckets[1]),
+				intervalPercentile(faultServiceLatency, lastBuckets[2]));
+	}
+
+	/**
+	 * 99th percentile of the values recorded since the previous copy of the
+	 * buckets, which is replaced by the current one
+	 */
+	private static long intervalPercentile(LatencyHistogram histogram, long previous[]) {
+		long current[] = new long[LatencyHistogram.BUCKETS];
+		histogram.copyCounts(current);
+
+		long interval[] = new long[LatencyHistogram.BUCKETS];
+		for (int i = 0; i < interval.length; i++)
+			interval[i] = current[i] - previous[i];
+		System.arraycopy(current, 0, previous, 0, current.length);
+
+		return LatencyHistogram.percentile(interval, 0.99);
+	}
+
+	private static double rate(long count, long total) {
+		return total == 0 ? 0 : (double) count / total;
+	}
+
+	/**
+	 * Print the latency of every path, at the end of a run
+	 */
+	public void printStatistics() {
+		System.out.println("Evictions : " + getEvictions() + ", dirty write-backs : " + getDirtyWriteBacks());
+		System.out.println("TLB Hit Latency : " + getTLBHitLatency());
+		System.out.println("Page Walk Latency : " + getPageWalkLatency());
+		System.out.println("Fault Service Latency : " + getFaultServiceLatency());
+	}
+
+	/**
+	 * Stop the reporter and unregister from JMX
+	 */
+	@Override
+	public void close() {
+		if (reporter != null) {
+			reporter.shutdownNow();
+			reporter = null;
+		}
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (JMException e) {
+				e.printStackTrace();
+			}
+			objectName = null;
+		}
+	}
+
+	@Override
+	public long getTranslations() {
+		return getTLBHits() + getPageTableHits() + getPageFaults();
+	}
+
+	@Override
+	public long getTLBHits() {
+		return counters.get(TLB_HITS);
+	}
+
+	@Override
+	public long getPageTableHits() {
+		return counters.get(PAGE_TABLE_HITS);
+	}
+
+	@Override
+	public long getPageFaults() {
+		return counters.get(PAGE_FAULTS);
+	}
+
+	@Override
+	public long getEvictions() {
+		return counters.get(EVICTIONS);
+	}
+
+	@Override
+	public long getDirtyWriteBacks() {
+		return counters.get(DIRTY_WRITE_BACKS);
+	}
+
+	@Override
+	public double getTLBHitRate() {
+		return rate(getTLBHits(), getTranslations());
+	}
+
+	@Override
+	public double getPageFaultRate() {
+		return rate(getPageFaults(), getTranslations());
+	}
+
+	@Override
+	public LatencySnapshot getTLBHitLatency() {
+		return TLBHitLatency.snapshot();
+	}
+
+	@Override
+	public LatencySnapshot getPageWalkLatency() {
+		return pageWalkLatency.snapshot();
+	}
+
+	@Override
+	public LatencySnapshot getFaultServiceLatency() {
+		return faultServiceLatency.snapshot();
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * description : Management interface of SimulatorMetrics.
+ * 				Registered with the platform MBean server under vmm:type=SimulatorMetrics, so a JMX
+ * 				client such as jconsole can watch a translator while its trace is running.
+ */
+
+public interface SimulatorMetricsMXBean {
+
+	long getTranslations();
+
+	long getTLBHits();
+
+	long getPageTableHits();
+
+	long getPageFaults();
+
+	long getEvictions();
+
+	long getDirtyWriteBacks();
+
+	double getTLBHitRate();
+
+	double getPageFaultRate();
+
+	/**
+	 * Time from the start of the translation to a TLB hit
+	 */
+	LatencySnapshot getTLBHitLatency();
+
+	/**
+	 * Time of a translation resolved by the page table after a TLB miss
+	 */
+	LatencySnapshot getPageWalkLatency();
+
+	/**
+	 * Time of a translation that caused a page fault, including the eviction
+	 * and the read of the page
+	 */
+	LatencySnapshot getFaultServiceLatency();
+}
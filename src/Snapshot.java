@@ -0,0 +1,206 @@
+/**
+ * description : Checkpoint of a TranslationEngine in one binary file, for a warm restart.
+ * 				The file starts with a fixed header giving the position reached in the trace and
+ * 				the size of every section, followed by the state of the engine (resident pages,
+ * 				counters, dirty bits, TLB and replacement policy) written with a DataOutputStream.
+ * 				Physical memory comes next, page aligned, and goes between the direct ByteBuffer
+ * 				chunks of PhysicalMemory and the file with channel I/O, without a copy through the
+ * 				heap. With write-back the backing store copy follows, transferred from file to
+ * 				file without passing through the heap, since the pages already written back are
+ * 				part of the state.
+ * 				Restoring reads the small state section, reads the memory section into the chunks
+ * 				and seeks the trace, so a run resumes in milliseconds wherever the snapshot was
+ * 				taken.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class Snapshot implements Closeable {
+
+	private static final long MAGIC = 0x564D4D534E415031L; // "VMMSNAP1"
+	private static final int HEADER_SIZE = 48;
+	private static final int ALIGNMENT = 4096; // sections start on a page of
+												// the file
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+
+	// Header
+	private final long traceOffset; // offset of the next record of the trace
+	private final long traceLine; // line of the trace before that offset
+	private final byte state[]; // state section
+	private final long memoryLength;
+	private final long storeLength; // 0 without write-back
+
+	/**
+	 * Open a snapshot and read its header and state section
+	 */
+	public Snapshot(String fileName) throws IOException {
+		file = new RandomAccessFile(fileName, "r");
+		channel = file.getChannel();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(header, 0);
+		header.flip();
+		if (header.getLong() != MAGIC)
+			throw new IOException(fileName + " is not a snapshot");
+
+		traceOffset = header.getLong();
+		traceLine = header.getLong();
+		state = new byte[header.getInt()];
+		memoryLength = header.getLong();
+		storeLength = header.getLong();
+
+		readFully(ByteBuffer.wrap(state), HEADER_SIZE);
+	}
+
+	/**
+	 * Open the snapshot named by the snapshot.restore system property
+	 *
+	 * @return null when the property is not set
+	 */
+	public static Snapshot fromSystemProperties() throws IOException {
+		String fileName = System.getProperty("snapshot.restore");
+		return fileName != null ? new Snapshot(fileName) : null;
+	}
+
+	/**
+	 * Save the state of an engine. Pending write-backs are waited for, so that
+	 * the copy of a writable backing store is complete
+	 *
+	 * @param engine
+	 *            : engine to save, which can go on translating afterwards
+	 * @param trace
+	 *            : trace the engine is translating, positioned after the last
+	 *            translated record
+	 * @param fileName
+	 *            : snapshot file, replaced if it exists
+	 */
+	public static void save(TranslationEngine engine, TraceReader trace, String fileName) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			engine.saveState(out);
+		}
+		byte state[] = bytes.toByteArray();
+
+		if (engine.getFlusher() != null)
+			engine.getFlusher().drain();
+		BackingStore store = engine.getBackingStore().isWritable() ? engine.getBackingStore() : null;
+
+		long memoryPosition = align(HEADER_SIZE + state.length);
+		long memoryLength = engine.getResidentBytes();
+
+		try (RandomAccessFile output = new RandomAccessFile(fileName, "rw");
+				FileChannel outputChannel = output.getChannel()) {
+			output.setLength(0);
+
+			long storeLength = 0;
+			if (store != null) {
+				outputChannel.position(align(memoryPosition + memoryLength));
+				storeLength = store.transferTo(outputChannel);
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putLong(MAGIC).putLong(trace.getOffset()).putLong(trace.getLineNumber()).putInt(state.length)
+					.putLong(memoryLength).putLong(storeLength);
+			header.flip();
+			writeFully(outputChannel, header, 0);
+			writeFully(outputChannel, ByteBuffer.wrap(state), HEADER_SIZE);
+
+			engine.saveMemory(outputChannel, memoryPosition);
+		}
+	}
+
+	/**
+	 * Whether the snapshot holds a copy of a writable backing store
+	 */
+	public boolean hasStore() {
+		return storeLength > 0;
+	}
+
+	/**
+	 * Extract the backing store copy of the snapshot into a writable store
+	 *
+	 * @param copyName
+	 *            : path of the extracted store, null for a temporary file
+	 *            deleted on close
+	 * @param pageSize
+	 *            : size of a page in bytes
+	 */
+	public BackingStore restoreStore(String copyName, int pageSize) throws IOException {
+		if (!hasStore())
+			throw new IllegalStateException("The snapshot holds no backing store");
+
+		File copy = (copyName == null) ? File.createTempFile("backing-store", ".bin") : new File(copyName);
+		try (RandomAccessFile output = new RandomAccessFile(copy, "rw");
+				FileChannel outputChannel = output.getChannel()) {
+			output.setLength(0);
+			long position = align(align(HEADER_SIZE + state.length) + memoryLength);
+			long copied = 0;
+			while (copied < storeLength)
+				copied += channel.transferTo(position + copied, storeLength - copied, outputChannel);
+		}
+
+		return BackingStore.openWritable(copy, pageSize, copyName == null);
+	}
+
+	/**
+	 * Restore the state and the physical memory of the snapshot into a new
+	 * engine of the same configuration
+	 */
+	public void restore(TranslationEngine engine) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+			engine.restoreState(in);
+		}
+		if (engine.getResidentBytes() != memoryLength)
+			throw new IOException("Snapshot memory of " + memoryLength + " bytes does not match its state");
+
+		engine.restoreMemory(channel, align(HEADER_SIZE + state.length));
+	}
+
+	/**
+	 * Position the trace at the first record the snapshot did not translate
+	 */
+	public void seek(TraceReader trace) throws IOException {
+		trace.seek(traceOffset, traceLine);
+	}
+
+	public long getTraceOffset() {
+		return traceOffset;
+	}
+
+	public long getTraceLine() {
+		return traceLine;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		file.close();
+	}
+
+	private static long align(long position) {
+		return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("Snapshot is truncated");
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer, position + buffer.position());
+	}
+}
@@ -0,0 +1,247 @@
+/**
+ * description : This program computes the LRU miss ratio curve of a trace in a single pass.
+ * 				The stack distance of every reference is measured with a StackDistanceTracker and
+ * 				counted in a histogram. An LRU memory of n frames faults on the cold references
+ * 				and on those with a distance above n, so the histogram gives the page fault count
+ * 				of the ModifiedSizeTranslation model for every frame count at once. The TLB hit
+ * 				curve is that of an idealized TLB, fully associative with LRU replacement and filled
+ * 				on every miss, which hits on the references with a distance up to its size. It is
+ * 				an upper bound and not the TLB of ModifiedSizeTranslation, which is set associative
+ * 				with its own policy and is only filled on page faults, so it hits far less often.
+ * 				The histogram is written to mrc.histogram.file and the curve to mrc.curve.file,
+ * 				both CSV. The trace file is the first argument, docs/addresses.txt by default.
+ * 				Addresses outside the address space of page.size and address.bits are counted and
+ * 				left out, as ModifiedSizeTranslation does.
+ * 				For traces too large for an exact pass, mrc.shards=N samples the pages with a
+ * 				ShardsSampler keeping at most N pages. The histogram and the curve are then
+ * 				estimates, by buckets of distances, and the curve gives the sampling error of every
+ * 				page fault rate, which leaves out the bias of the estimate and so is not a bound.
+ * 				mrc.shards.verify=true also runs the exact pass to print the actual error.
+ */
+
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+public class StackDistanceAnalysis {
+
+	// Page size and address width, from page.size and address.bits
+	private final AddressGeometry geometry = AddressGeometry.fromSystemProperties();
+
+	private final String traceFileName;
+
+	private long histogram[]; // histogram[d] = references with stack distance
+								// d, histogram[0] = cold references
+	private long maxDistance;
+	private long totalAddresses; // Addresses inside the address space
+	private long invalidAddresses; // Addresses outside the address space
+
+	private final ShardsSampler sampler = ShardsSampler.fromSystemProperties(); // mrc.shards
+	private final boolean exact = sampler == null || Boolean.getBoolean("mrc.shards.verify");
+
+	public StackDistanceAnalysis(String traceFileName) {
+		this.traceFileName = traceFileName;
+		histogram = new long[1024];
+		maxDistance = 0;
+		totalAddresses = 0;
+		invalidAddresses = 0;
+	}
+
+	public static void main(String[] args) {
+		new StackDistanceAnalysis(args.length > 0 ? args[0] : "./docs/addresses.txt").init();
+	}
+
+	public void init() {
+
+		StackDistanceTracker tracker = new StackDistanceTracker();
+
+		try (TraceReader trace = new TraceReader(traceFileName)) {
+			long start = System.nanoTime();
+
+			while (trace.next()) {
+				if (!geometry.contains(trace.address())) {
+					invalidAddresses++;
+					continue;
+				}
+
+				long page = geometry.pageNumber(trace.address());
+				if (sampler != null)
+					sampler.access(page);
+				if (exact)
+					count(tracker.access(page), 1);
+				totalAddresses++;
+			}
+
+			long elapsed = System.nanoTime() - start;
+
+			String histogramFile = System.getProperty("mrc.histogram.file", "stack_distance_histogram.csv");
+			String curveFile = System.getProperty("mrc.curve.file", "miss_ratio_curve.csv");
+			System.out.println("Addresses : " + totalAddresses);
+			if (invalidAddresses > 0)
+				System.out.println("Addresses outside the address space : " + invalidAddresses);
+
+			if (sampler == null) {
+				writeHistogram(histogramFile);
+				writeCurve(curveFile);
+
+				System.out.println("Distinct Pages : " + tracker.distinctPages());
+				System.out.println("Cold Page Faults : " + histogram[0]);
+			} else {
+				writeSampledHistogram(histogramFile);
+				double maxSamplingError = writeSampledCurve(curveFile);
+
+				System.out.println("Sampled References : " + sampler.getSampledReferences() + " to "
+						+ sampler.getSampledPages() + " pages, sampling rate " + (float) sampler.getRate() + " after "
+						+ sampler.getThresholdDrops() + " threshold drops");
+				System.out.println("Estimated Distinct Pages : " + Math.round(sampler.getEstimatedPages()));
+				System.out.println("Estimated Cold Page Faults : " + Math.round(sampler.getColdReferences()));
+				System.out.println("Histogram : " + sampler.getBucketCount() + " buckets of "
+						+ sampler.getBucketWidth() + " distances");
+				System.out.println("Page Fault Rate Sampling Error : " + (float) maxSamplingError
+						+ " (two standard errors over 16 groups, largest over sizes, bias not included)");
+				if (exact)
+					printSampledError(tracker.distinctPages());
+			}
+			System.out.println("Analysis Time : " + elapsed / 1000000 + " ms");
+
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Estimated histogram of the sampler, one line per bucket labelled with
+	 * its largest distance
+	 */
+	private void writeSampledHistogram(String fileName) throws IOException {
+		try (PrintWriter out = new PrintWriter(new FileWriter(fileName))) {
+			out.println("stack_distance,references");
+			out.println("cold," + Math.round(sampler.getColdReferences()));
+			for (int b = 0; b < sampler.getBucketCount(); b++) {
+				long references = Math.round(sampler.getBucket(b));
+				if (references != 0)
+					out.println((b + 1) * sampler.getBucketWidth() + "," + references);
+			}
+		}
+	}
+
+	/**
+	 * Estimated curve at the largest distance of every bucket, with the
+	 * sampling error of each page fault rate. Sizes below 1 / R are left out:
+	 * a sampled distance of 1 already stands for 1 / R pages, so the curve is
+	 * not resolved there
+	 *
+	 * @return largest sampling error of the curve
+	 */
+	private double writeSampledCurve(String fileName) throws IOException {
+		double maxSamplingError = 0;
+		try (PrintWriter out = new PrintWriter(new FileWriter(fileName))) {
+			out.println("size,page_faults,page_fault_rate,tlb_hits,tlb_hit_rate,sampling_error");
+
+			double hits = 0;
+			double samplingErrors[] = sampler.getSamplingErrors();
+			for (int b = 0; b < sampler.getBucketCount(); b++) {
+				hits += sampler.getBucket(b);
+				double rate = clamp((totalAddresses - hits) / totalAddresses);
+				double samplingError = samplingErrors[b];
+				if (!isResolved(b))
+					continue;
+				maxSamplingError = Math.max(maxSamplingError, samplingError);
+
+				out.println((b + 1) * sampler.getBucketWidth() + "," + Math.round(rate * totalAddresses) + ","
+						+ (float) rate + "," + Math.round((1 - rate) * totalAddresses) + "," + (float) (1 - rate) + ","
+						+ (float) samplingError);
+			}
+		}
+		return maxSamplingError;
+	}
+
+	/**
+	 * Compare the estimated page fault rates with the exact ones at the sizes
+	 * of the sampled curve
+	 */
+	private void printSampledError(int distinctPages) {
+		double estimatedHits = 0;
+		long exactHits = 0;
+		int distance = 1;
+		double errorSum = 0;
+		double maxError = 0;
+		int sizes = 0;
+
+		for (int b = 0; b < sampler.getBucketCount(); b++) {
+			estimatedHits += sampler.getBucket(b);
+			long size = (b + 1) * sampler.getBucketWidth();
+			for (; distance <= size && distance < histogram.length; distance++)
+				exactHits += histogram[distance];
+
+			if (!isResolved(b))
+				continue;
+			double error = Math.abs(clamp((totalAddresses - estimatedHits) / totalAddresses)
+					- (double) (totalAddresses - exactHits) / totalAddresses);
+			errorSum += error;
+			maxError = Math.max(maxError, error);
+			sizes++;
+		}
+
+		System.out.println("Page Fault Rate Error : " + (float) (errorSum / Math.max(1, sizes))
+				+ " mean absolute, " + (float) maxError + " largest, against " + distinctPages
+				+ " distinct pages");
+	}
+
+	/**
+	 * True if the sizes of a bucket reach 1 / R
+	 */
+	private boolean isResolved(int bucket) {
+		return (bucket + 1) * sampler.getBucketWidth() >= 1 / sampler.getRate();
+	}
+
+	private static double clamp(double rate) {
+		return Math.max(0, Math.min(1, rate));
+	}
+
+	/**
+	 * Add references to the histogram bucket of a distance
+	 */
+	private void count(long distance, long references) {
+		if (distance >= histogram.length)
+			histogram = Arrays.copyOf(histogram, (int) Math.max(distance + 1, 2L * histogram.length));
+		histogram[(int) distance] += references;
+		maxDistance = Math.max(maxDistance, distance);
+	}
+
+	private void writeHistogram(String fileName) throws IOException {
+		try (PrintWriter out = new PrintWriter(new FileWriter(fileName))) {
+			out.println("stack_distance,references");
+			out.println("cold," + histogram[0]);
+			for (int d = 1; d <= maxDistance; d++) {
+				if (histogram[d] != 0)
+					out.println(d + "," + histogram[d]);
+			}
+		}
+	}
+
+	/**
+	 * Curve of page faults and TLB hits for every size from 1 to the largest
+	 * distance, beyond which only the cold faults remain. The TLB hits are
+	 * those of an idealized fully associative LRU TLB of the size
+	 */
+	private void writeCurve(String fileName) throws IOException {
+		try (PrintWriter out = new PrintWriter(new FileWriter(fileName))) {
+			out.println("size,page_faults,page_fault_rate,tlb_hits,tlb_hit_rate");
+
+			long hits = 0;
+			for (int size = 1; size <= Math.max(1, maxDistance); size++) {
+				if (size < histogram.length)
+					hits += histogram[size];
+				long faults = totalAddresses - hits;
+
+				out.println(size + "," + faults + "," + (float) faults / totalAddresses + "," + hits + ","
+						+ (float) hits / totalAddresses);
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * description : Mattson stack distances of a stream of page references.
+ * 				The stack distance of a reference is the position of its page in the LRU stack,
+ * 				that is the number of distinct pages referenced since the previous reference to
+ * 				the same page, plus one. A reference hits in every LRU memory with at least that
+ * 				many frames, so one pass gives the fault count of every memory size.
+ * 				Every reference takes a time slot and the last slot of each page is marked in a
+ * 				Fenwick tree; the distance is the number of marked slots after the previous slot
+ * 				of the page, found with one prefix sum in O(log n). When the slots run out the
+ * 				live slots are renumbered in order, so memory stays proportional to the number of
+ * 				distinct pages rather than to the length of the trace.
+ */
+
+public class StackDistanceTracker {
+
+	public static final long COLD = 0; // distance of the first reference to a
+										// page
+
+	private final LongIntHashMap lastSlot; // slot of the last reference to
+											// each page
+	private int tree[]; // Fenwick tree over the slots, 1 for marked slots
+	private long slotPage[]; // page of each marked slot, -1 if unmarked
+	private int clock; // next free slot
+	private int live; // marked slots, one per distinct page
+
+	public StackDistanceTracker() {
+		this(1 << 16);
+	}
+
+	public StackDistanceTracker(int initialSlots) {
+		lastSlot = new LongIntHashMap(initialSlots / 2);
+		allocate(Math.max(16, initialSlots));
+		clock = 0;
+		live = 0;
+	}
+
+	/**
+	 * Record a reference to the page
+	 *
+	 * @return its stack distance, 1 for a page referenced again immediately,
+	 *         COLD for the first reference to the page
+	 */
+	public long access(long page) {
+		if (clock == slotPage.length)
+			compact();
+
+		long distance;
+		int previous = lastSlot.put(page, clock);
+
+		if (previous == LongIntHashMap.MISSING) {
+			distance = COLD;
+			live++;
+		} else {
+			distance = live - prefix(previous) + 1; // marked slots after the
+													// previous reference, plus
+													// the page itself
+			add(previous, -1);
+			slotPage[previous] = -1;
+		}
+
+		add(clock, 1);
+		slotPage[clock] = page;
+		clock++;
+
+		return distance;
+	}
+
+	/**
+	 * Forget a page, used when a sampled page leaves the sample set
+	 */
+	public void remove(long page) {
+		int slot = lastSlot.remove(page);
+		if (slot != LongIntHashMap.MISSING) {
+			add(slot, -1);
+			slotPage[slot] = -1;
+			live--;
+		}
+	}
+
+	/**
+	 * Number of distinct pages referenced so far
+	 */
+	public int distinctPages() {
+		return live;
+	}
+
+	/**
+	 * Renumber the marked slots from 0 in their order and rebuild the tree,
+	 * with room for at least as many new references as there are pages
+	 */
+	private void compact() {
+		long pages[] = slotPage;
+		allocate(Math.max(pages.length, 2 * live));
+
+		int next = 0;
+		for (int slot = 0; slot < pages.length; slot++) {
+			if (pages[slot] != -1) {
+				slotPage[next] = pages[slot];
+				lastSlot.put(pages[slot], next);
+				tree[next + 1] = 1;
+				next++;
+			}
+		}
+		clock = next;
+
+		// build the Fenwick tree in place in linear time
+		for (int i = 1; i < tree.length; i++) {
+			int parent = i + (i & -i);
+			if (parent < tree.length)
+				tree[parent] += tree[i];
+		}
+	}
+
+	private void allocate(int slots) {
+		tree = new int[slots + 1];
+		slotPage = new long[slots];
+		for (int i = 0; i < slots; i++)
+			slotPage[i] = -1;
+	}
+
+	private void add(int slot, int delta) {
+		for (int i = slot + 1; i < tree.length; i += i & -i)
+			tree[i] += delta;
+	}
+
+	/**
+	 * Number of marked slots from 0 to slot included
+	 */
+	private int prefix(int slot) {
+		int sum = 0;
+		for (int i = slot + 1; i > 0; i -= i & -i)
+			sum += tree[i];
+		return sum;
+	}
+}
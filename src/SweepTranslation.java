@@ -0,0 +1,222 @@
+/**
+ * description : This program sweeps the configuration space of ModifiedSizeTranslation.
+ * 				The trace is loaded once into a PageTrace, then every combination of frame
+ * 				count, TLB size and replacement policy is simulated in parallel on a fork-join
+ * 				pool, one independent simulator per cell, and the page fault and TLB hit rates
+ * 				of all cells are written as one CSV table.
+ * 				The grid comes from the system properties sweep.frames, sweep.tlb and
+ * 				sweep.policies (comma separated lists), the table goes to sweep.file or the
+ * 				standard output. The trace file is the first argument, docs/addresses.txt by
+ * 				default. Addresses outside the address space of page.size and address.bits are
+ * 				counted and left out of the trace.
+ */
+
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class SweepTranslation {
+
+	// Page size and address width, from page.size and address.bits
+	private final AddressGeometry geometry = AddressGeometry.fromSystemProperties();
+
+	private final String traceFileName;
+	private final int frameCounts[];
+	private final int TLBSizes[];
+	private final String policies[];
+	private final int TLBWays[]; // Ways of each TLB size, from tlb.ways
+	private final TranslationLookasideBuffer.Policy TLBPolicy;
+
+	private PageTrace trace = null;
+	private int nextUse[] = null; // only computed when opt is swept
+	private ThreadLocal<int[]> pageTables = null; // Page table of each
+													// worker, reused by the
+													// cells it simulates
+
+	// Results of cell c, the cells being ordered by policy, then frames, then
+	// TLB size
+	private long pageFaults[];
+	private long TLBHits[];
+
+	public SweepTranslation(String traceFileName) {
+		this.traceFileName = traceFileName;
+
+		frameCounts = parseInts(System.getProperty("sweep.frames", "16,32,64,128"));
+		TLBSizes = parseInts(System.getProperty("sweep.tlb", "8,16,32,64"));
+		policies = System.getProperty("sweep.policies", "lru,fifo,clock,lfu,arc,2q,opt").split(",");
+		TLBWays = new int[TLBSizes.length];
+		for (int i = 0; i < TLBSizes.length; i++) { // checked here rather
+													// than in a worker
+			TLBWays[i] = Math.min(TLBSizes[i], Integer.getInteger("tlb.ways", TLBSizes[i]));
+			if (TLBWays[i] <= 0 || TLBSizes[i] % TLBWays[i] != 0)
+				throw new IllegalArgumentException("tlb.ways=" + TLBWays[i] + " does not divide the TLB size "
+						+ TLBSizes[i] + " of sweep.tlb");
+		}
+		TLBPolicy = TranslationLookasideBuffer.Policy
+				.valueOf(System.getProperty("tlb.policy", TranslationLookasideBuffer.Policy.LFU.name()).toUpperCase());
+
+		int cells = policies.length * frameCounts.length * TLBSizes.length;
+		pageFaults = new long[cells];
+		TLBHits = new long[cells];
+	}
+
+	public static void main(String[] args) {
+		new SweepTranslation(args.length > 0 ? args[0] : "./docs/addresses.txt").init();
+	}
+
+	public void init() {
+
+		try {
+			trace = PageTrace.load(traceFileName, geometry);
+			pageTables = new ThreadLocal<int[]>() {
+				@Override
+				protected int[] initialValue() {
+					int pageTable[] = new int[trace.getMaxPage() + 1];
+					Arrays.fill(pageTable, -1);
+					return pageTable;
+				}
+			};
+			for (String policy : policies) {
+				if (policy.trim().equalsIgnoreCase("opt"))
+					nextUse = trace.nextUses();
+			}
+
+			long start = System.nanoTime();
+			ForkJoinPool pool = new ForkJoinPool(
+					Integer.getInteger("sweep.threads", Runtime.getRuntime().availableProcessors()));
+			pool.invoke(new SweepTask(0, pageFaults.length));
+			pool.shutdown();
+			long elapsed = System.nanoTime() - start;
+
+			writeTable();
+			System.err.println("Simulated " + pageFaults.length + " configurations of " + trace.length()
+					+ " addresses in " + elapsed / 1000000 + " ms on " + pool.getParallelism() + " threads");
+			if (trace.getInvalidAddresses() > 0)
+				System.err.println("Addresses outside the address space : " + trace.getInvalidAddresses());
+
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Splits the range of cells in halves until one cell remains, which is
+	 * then simulated by the worker running the task
+	 */
+	private class SweepTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		SweepTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				simulate(from);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new SweepTask(from, middle), new SweepTask(middle, to));
+			}
+		}
+	}
+
+	/**
+	 * Replay the trace with the configuration of one cell. The simulator
+	 * follows the ModifiedSizeTranslation model (TLB, then page table, then
+	 * fault) but only counts, it does not copy page contents
+	 */
+	private void simulate(int cell) {
+		int policyIndex = cell / (frameCounts.length * TLBSizes.length);
+		int frames = frameCounts[(cell / TLBSizes.length) % frameCounts.length];
+		int TLBIndex = cell % TLBSizes.length;
+
+		ReplacementPolicy policy = ReplacementPolicy.create(policies[policyIndex].trim(), frames);
+		OPTReplacement opt = (policy instanceof OPTReplacement) ? (OPTReplacement) policy : null;
+		TranslationLookasideBuffer TLB = new TranslationLookasideBuffer(TLBSizes[TLBIndex], TLBWays[TLBIndex],
+				TLBPolicy);
+
+		int pageTable[] = pageTables.get(); // all -1 between two cells
+		int framePage[] = new int[frames];
+
+		int usedFrames = 0;
+		long faults = 0;
+		long hits = 0;
+
+		for (int i = 0; i < trace.length(); i++) {
+			int page = trace.page(i);
+			if (opt != null)
+				opt.setNextUse(nextUse[i]);
+
+			int frame = TLB.lookup(page);
+			if (frame != -1) { // TLB hit
+				hits++;
+				policy.touch(frame);
+			} else if ((frame = pageTable[page]) != -1) { // Page table hit
+				policy.touch(frame);
+			} else { // Page fault
+				faults++;
+				if (usedFrames < frames) {
+					frame = usedFrames++;
+				} else {
+					frame = policy.victim(page);
+					pageTable[framePage[frame]] = -1;
+					TLB.invalidate(framePage[frame]);
+				}
+
+				pageTable[page] = frame;
+				framePage[frame] = page;
+				policy.admit(frame, page);
+				TLB.insert(page, frame);
+			}
+		}
+
+		for (int i = 0; i < usedFrames; i++) // leave the table empty for
+												// the next cell
+			pageTable[framePage[i]] = -1;
+
+		pageFaults[cell] = faults;
+		TLBHits[cell] = hits;
+	}
+
+	private void writeTable() throws IOException {
+		String fileName = System.getProperty("sweep.file");
+		PrintWriter out = new PrintWriter(fileName != null ? new FileWriter(fileName) : new OutputStreamWriter(System.out));
+
+		out.println("policy,frames,tlb_entries,addresses,page_faults,page_fault_rate,tlb_hits,tlb_hit_rate");
+		for (int cell = 0; cell < pageFaults.length; cell++) {
+			int policyIndex = cell / (frameCounts.length * TLBSizes.length);
+			int frames = frameCounts[(cell / TLBSizes.length) % frameCounts.length];
+			int TLBSize = TLBSizes[cell % TLBSizes.length];
+
+			out.println(policies[policyIndex].trim().toLowerCase() + "," + frames + "," + TLBSize + "," + trace.length()
+					+ "," + pageFaults[cell] + "," + (float) pageFaults[cell] / trace.length() + "," + TLBHits[cell] + ","
+					+ (float) TLBHits[cell] / trace.length());
+		}
+
+		if (fileName != null)
+			out.close();
+		else
+			out.flush();
+	}
+
+	private static int[] parseInts(String list) {
+		String items[] = list.split(",");
+		int values[] = new int[items.length];
+		for (int i = 0; i < items.length; i++)
+			values[i] = Integer.parseInt(items[i].trim());
+		return values;
+	}
+}
@@ -0,0 +1,193 @@
+/**
+ * description : Two level TLB, a first level TLB backed by a larger second level TLB (STLB).
+ * 				A lookup that misses the first level looks the second level up before the page
+ * 				table is walked, and an entry found there is brought into the first level. Each level
+ * 				is a TranslationLookasideBuffer with its own size, associativity and replacement
+ * 				policy, so the hierarchy can be shaped after a real CPU, for example a 64 entry
+ * 				4-way L1 dTLB in front of a 1536 entry 12-way STLB.
+ * 				An inclusive hierarchy keeps every first level entry in the second level as well:
+ * 				entries are filled into both levels and an entry replaced in the second level is
+ * 				removed from the first. An exclusive hierarchy keeps an entry in one level only:
+ * 				entries are filled into the first level, the entries it replaces move down to the
+ * 				second level and an entry found in the second level moves up.
+ * 				Huge page entries go through the hierarchy like base page entries.
+ */
+
+public class TLBHierarchy {
+
+	private final TranslationLookasideBuffer first;
+	private final TranslationLookasideBuffer second;
+	private final boolean exclusive;
+
+	// Statistics, a translation hitting at most one level
+	private long firstLevelHits;
+	private long secondLevelHits;
+	private long secondLevelLookups; // Lookups that missed the first level
+	private long backInvalidations; // First level entries removed to keep
+									// the hierarchy inclusive
+
+	/**
+	 * @param first
+	 *            : first level TLB, the TLB of the engine
+	 * @param second
+	 *            : second level TLB
+	 * @param exclusive
+	 *            : true for an exclusive hierarchy, false for an inclusive one
+	 */
+	public TLBHierarchy(TranslationLookasideBuffer first, TranslationLookasideBuffer second, boolean exclusive) {
+		if (!exclusive && second.getEntries() < first.getEntries())
+			throw new IllegalArgumentException("An inclusive second level of " + second.getEntries()
+					+ " entries cannot hold the " + first.getEntries() + " entries of the first level");
+
+		this.first = first;
+		this.second = second;
+		this.exclusive = exclusive;
+	}
+
+	/**
+	 * Create the hierarchy asked for by the system properties: tlb.l2.entries
+	 * entries in the second level, tlb.l2.ways ways (fully associative by
+	 * default), tlb.l2.policy (lru by default) and tlb.l2.mode, inclusive or
+	 * exclusive
+	 *
+	 * @param first
+	 *            : first level TLB, described by the tlb properties
+	 * @return null when tlb.l2.entries is not set or is 0
+	 */
+	public static TLBHierarchy fromSystemProperties(TranslationLookasideBuffer first) {
+		int entries = Integer.getInteger("tlb.l2.entries", 0);
+		if (entries <= 0)
+			return null;
+
+		int ways = Integer.getInteger("tlb.l2.ways", entries);
+		TranslationLookasideBuffer.Policy policy = TranslationLookasideBuffer.Policy
+				.valueOf(System.getProperty("tlb.l2.policy", TranslationLookasideBuffer.Policy.LRU.name()).toUpperCase());
+
+		String mode = System.getProperty("tlb.l2.mode", "inclusive").toLowerCase();
+		if (!mode.equals("inclusive") && !mode.equals("exclusive"))
+			throw new IllegalArgumentException("Unknown TLB hierarchy mode: " + mode);
+
+		return new TLBHierarchy(first, new TranslationLookasideBuffer(entries, ways, policy),
+				mode.equals("exclusive"));
+	}
+
+	/**
+	 * Look the page up in the first level, then in the second level
+	 *
+	 * @return frame number of the page, -1 if both levels miss
+	 */
+	public int lookup(long page) {
+		return lookupTag(page);
+	}
+
+	/**
+	 * Look a huge page up in the first level, then in the second level
+	 *
+	 * @return first frame of the huge page, -1 if both levels miss
+	 */
+	public int lookupHuge(long hugePage) {
+		return lookupTag(hugePage | TranslationLookasideBuffer.HUGE_PAGE);
+	}
+
+	/**
+	 * Add the page after a page walk or a page fault
+	 */
+	public void insert(long page, int frame) {
+		insertTag(page, frame);
+	}
+
+	public void insertHuge(long hugePage, int firstFrame) {
+		insertTag(hugePage | TranslationLookasideBuffer.HUGE_PAGE, firstFrame);
+	}
+
+	/**
+	 * Remove the page from both levels, used when the page is evicted from
+	 * memory
+	 */
+	public void invalidate(long page) {
+		first.invalidate(page);
+		second.invalidate(page);
+	}
+
+	public void invalidateHuge(long hugePage) {
+		invalidate(hugePage | TranslationLookasideBuffer.HUGE_PAGE);
+	}
+
+	/**
+	 * Look up an entry by its tag, the page number or the huge page number
+	 * tagged with HUGE_PAGE
+	 */
+	private int lookupTag(long tag) {
+		int frame = first.lookup(tag);
+		if (frame != -1) {
+			firstLevelHits++;
+			return frame;
+		}
+
+		secondLevelLookups++;
+		frame = second.lookup(tag);
+		if (frame == -1)
+			return -1;
+
+		secondLevelHits++;
+		if (exclusive)
+			second.invalidate(tag); // the entry moves up
+		fill(tag, frame);
+		return frame;
+	}
+
+	private void insertTag(long tag, int frame) {
+		if (exclusive) {
+			second.invalidate(tag);
+		} else {
+			long replaced = second.insert(tag, frame);
+			if (replaced != -1 && first.invalidate(replaced))
+				backInvalidations++;
+		}
+		fill(tag, frame);
+	}
+
+	/**
+	 * Add an entry to the first level. In an exclusive hierarchy the entry it
+	 * replaces moves down to the second level, in an inclusive one it is
+	 * still there
+	 */
+	private void fill(long tag, int frame) {
+		long replaced = first.insert(tag, frame);
+		if (exclusive && replaced != -1)
+			second.insert(replaced, first.getEvictedFrame());
+	}
+
+	public TranslationLookasideBuffer getFirstLevel() {
+		return first;
+	}
+
+	public TranslationLookasideBuffer getSecondLevel() {
+		return second;
+	}
+
+	public boolean isExclusive() {
+		return exclusive;
+	}
+
+	public long getFirstLevelHits() {
+		return firstLevelHits;
+	}
+
+	public long getSecondLevelHits() {
+		return secondLevelHits;
+	}
+
+	public long getSecondLevelLookups() {
+		return secondLevelLookups;
+	}
+
+	public long getBackInvalidations() {
+		return backInvalidations;
+	}
+
+	@Override
+	public String toString() {
+		return "L1 " + first + ", L2 " + second + (exclusive ? ", exclusive" : ", inclusive");
+	}
+}
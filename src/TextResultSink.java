@@ -0,0 +1,120 @@
+/**
+ * description : Result sink writing the text lines of docs/Output_*.txt.
+ * 				Lines are encoded straight into a large byte buffer, numbers included, and the
+ * 				buffer is written to the stream only when it is full, so a record allocates
+ * 				nothing and costs no system call.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class TextResultSink implements ResultSink {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final byte VIRTUAL[] = ascii("Virtual address: ");
+	private static final byte PHYSICAL[] = ascii(" Physical address: ");
+	private static final byte VALUE[] = ascii(" Value: ");
+
+	private final OutputStream out;
+	private final boolean closeStream;
+	private final byte buffer[];
+	private int count;
+
+	/**
+	 * @param out
+	 *            : stream receiving the text
+	 * @param closeStream
+	 *            : close the stream with the sink, false for standard output
+	 */
+	public TextResultSink(OutputStream out, boolean closeStream) {
+		this.out = out;
+		this.closeStream = closeStream;
+		buffer = new byte[BUFFER_SIZE];
+		count = 0;
+	}
+
+	@Override
+	public void record(long virtualAddress, long physicalAddress, int value) throws IOException {
+		if (count > BUFFER_SIZE - 128) // longest possible record
+			flush();
+
+		put(VIRTUAL);
+		putNumber(virtualAddress);
+		put(PHYSICAL);
+		putNumber(physicalAddress);
+		put(VALUE);
+		putNumber(value);
+		buffer[count++] = '\n';
+	}
+
+	@Override
+	public void message(String line) throws IOException {
+		byte text[] = ascii(line);
+		if (count + text.length + 1 > BUFFER_SIZE)
+			flush();
+		if (text.length + 1 > BUFFER_SIZE) {
+			out.write(text);
+			out.write('\n');
+			return;
+		}
+
+		put(text);
+		buffer[count++] = '\n';
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (count > 0) {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		if (closeStream)
+			out.close();
+	}
+
+	private void put(byte text[]) {
+		System.arraycopy(text, 0, buffer, count, text.length);
+		count += text.length;
+	}
+
+	/**
+	 * Encode the decimal digits of the number at the end of the buffer
+	 */
+	private void putNumber(long number) {
+		if (number == Long.MIN_VALUE) {
+			put(ascii(Long.toString(number)));
+			return;
+		}
+		if (number < 0) {
+			buffer[count++] = '-';
+			number = -number;
+		}
+
+		int start = count;
+		do {
+			buffer[count++] = (byte) ('0' + number % 10);
+			number /= 10;
+		} while (number != 0);
+
+		// digits were produced from the least significant one
+		for (int i = start, j = count - 1; i < j; i++, j--) {
+			byte digit = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = digit;
+		}
+	}
+
+	private static byte[] ascii(String text) {
+		byte bytes[] = new byte[text.length()];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) text.charAt(i);
+		return bytes;
+	}
+}
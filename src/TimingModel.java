@@ -0,0 +1,181 @@
+/**
+ * description : Simulated time of a run, from the counts of each access path and their latencies.
+ * 				Every translation looks the TLB up and then accesses memory. A miss of the first
+ * 				level TLB also looks up the second level when there is one, a page walk makes the
+ * 				memory references of the page table, and a page fault reads the backing store, or
+ * 				decompresses the page from the compressed swap tier, and writes back the dirty page
+ * 				it evicts. Dirty pages cleaned ahead of eviction are written in the background and
+ * 				cost nothing.
+ * 				The time is computed from the counters of the engine, so the translations pay
+ * 				nothing for it: the engine only hands its counters over at the end of each window
+ * 				of accesses and at the end of the run. Each window prints a line with its effective
+ * 				access time, the share of time spent in page faults and the simulated throughput,
+ * 				which shows how the cost changes during the run.
+ * 				Latencies are in nanoseconds and are given by the timing system properties, the
+ * 				defaults being those of a current server with an SSD. Times are also given in cycles
+ * 				at timing.ghz.
+ */
+
+import java.io.PrintStream;
+
+public class TimingModel {
+
+	// Indexes of the counters handed over by the engine
+	public static final int TRANSLATIONS = 0;
+	public static final int SECOND_LEVEL_LOOKUPS = 1; // First level TLB misses
+														// looking up the second
+														// level
+	public static final int WALK_REFERENCES = 2; // Memory references of the
+													// page walks
+	public static final int STORE_READS = 3;
+	public static final int SWAP_HITS = 4; // Pages decompressed from the
+											// compressed swap tier
+	public static final int DIRTY_WRITES = 5; // Dirty pages written back on
+												// eviction
+	public static final int COUNTERS = 6;
+
+	private final double TLBLatency;
+	private final double secondLevelLatency;
+	private final double memoryLatency;
+	private final double readLatency;
+	private final double writeLatency;
+	private final double swapLatency;
+	private final double ghz; // Clock rate converting nanoseconds to cycles
+
+	private final long window; // Accesses per window, 0 for no window
+	private final PrintStream out; // Stream receiving the window lines
+
+	private final long last[] = new long[COUNTERS]; // Counters at the end of
+													// the previous window
+	private int windows;
+
+	/**
+	 * @param TLBLatency
+	 *            : lookup of the TLB, of its first level in a hierarchy
+	 * @param secondLevelLatency
+	 *            : lookup of the second level TLB
+	 * @param memoryLatency
+	 *            : memory reference, of the access itself or of a page walk
+	 * @param readLatency
+	 *            : read of a page from the backing store
+	 * @param writeLatency
+	 *            : write of a dirty page to the backing store
+	 * @param swapLatency
+	 *            : decompression of a page from the compressed swap tier
+	 * @param ghz
+	 *            : clock rate giving the times in cycles
+	 * @param window
+	 *            : accesses per window line, 0 for none
+	 * @param out
+	 *            : stream receiving the window lines
+	 */
+	public TimingModel(double TLBLatency, double secondLevelLatency, double memoryLatency, double readLatency,
+			double writeLatency, double swapLatency, double ghz, long window, PrintStream out) {
+		if (TLBLatency < 0 || secondLevelLatency < 0 || memoryLatency < 0 || readLatency < 0 || writeLatency < 0
+				|| swapLatency < 0 || ghz <= 0 || window < 0)
+			throw new IllegalArgumentException("Invalid timing model");
+
+		this.TLBLatency = TLBLatency;
+		this.secondLevelLatency = secondLevelLatency;
+		this.memoryLatency = memoryLatency;
+		this.readLatency = readLatency;
+		this.writeLatency = writeLatency;
+		this.swapLatency = swapLatency;
+		this.ghz = ghz;
+		this.window = window;
+		this.out = out;
+	}
+
+	/**
+	 * Create the model asked for by the system properties: timing=true turns
+	 * it on, timing.tlb, timing.tlb.l2, timing.memory, timing.read,
+	 * timing.write and timing.zswap give the latencies in nanoseconds,
+	 * timing.ghz the clock rate and timing.window the accesses per window line,
+	 * printed on the error stream
+	 *
+	 * @return null when timing is not set
+	 */
+	public static TimingModel fromSystemProperties() {
+		if (!Boolean.getBoolean("timing"))
+			return null;
+
+		return new TimingModel(number("timing.tlb", "1"), number("timing.tlb.l2", "3"),
+				number("timing.memory", "80"), number("timing.read", "100000"), number("timing.write", "100000"),
+				number("timing.zswap", "1000"), number("timing.ghz", "3"), Long.getLong("timing.window", 0),
+				System.err);
+	}
+
+	private static double number(String property, String defaultValue) {
+		return Double.parseDouble(System.getProperty(property, defaultValue));
+	}
+
+	/**
+	 * Accesses per window, the engine hands its counters over every window
+	 * accesses
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * Start the first window at the given counters, those of an engine
+	 * restored from a snapshot or of a new engine
+	 */
+	public void start(long counters[]) {
+		System.arraycopy(counters, 0, last, 0, COUNTERS);
+	}
+
+	/**
+	 * Print the line of the window ending at the given counters
+	 */
+	public void window(long counters[]) {
+		windows++;
+		out.println("Timing window " + windows + " : " + describe(counters, last));
+		System.arraycopy(counters, 0, last, 0, COUNTERS);
+	}
+
+	/**
+	 * Print the time of the whole run
+	 */
+	public void printStatistics(long counters[]) {
+		System.out.println("Timing Model : TLB " + TLBLatency + " ns, L2 TLB " + secondLevelLatency + " ns, memory "
+				+ memoryLatency + " ns, read " + readLatency + " ns, write " + writeLatency + " ns, zswap "
+				+ swapLatency + " ns, " + ghz + " GHz");
+		System.out.println("Simulated Time : " + describe(counters, new long[COUNTERS]));
+	}
+
+	/**
+	 * Effective access time, share of page faults and throughput between two
+	 * sets of counters
+	 */
+	private String describe(long counters[], long from[]) {
+		long accesses = counters[TRANSLATIONS] - from[TRANSLATIONS];
+		double faultTime = getFaultTime(counters, from);
+		double time = getTime(counters, from);
+		double accessTime = accesses == 0 ? 0 : time / accesses;
+
+		return String.format("%d accesses in %.3f ms, Effective Access Time : %.2f ns (%.1f cycles),"
+				+ " %.1f%% in page faults, %.0f accesses/s", accesses, time / 1e6, accessTime, accessTime * ghz,
+				time == 0 ? 0 : 100 * faultTime / time, time == 0 ? 0 : accesses / (time / 1e9));
+	}
+
+	/**
+	 * Simulated nanoseconds between two sets of counters
+	 */
+	public double getTime(long counters[], long from[]) {
+		return (counters[TRANSLATIONS] - from[TRANSLATIONS]) * (TLBLatency + memoryLatency)
+				+ (counters[SECOND_LEVEL_LOOKUPS] - from[SECOND_LEVEL_LOOKUPS]) * secondLevelLatency
+				+ (counters[WALK_REFERENCES] - from[WALK_REFERENCES]) * memoryLatency
+				+ getFaultTime(counters, from);
+	}
+
+	/**
+	 * Simulated nanoseconds spent reading, decompressing and writing back
+	 * pages on page faults
+	 */
+	public double getFaultTime(long counters[], long from[]) {
+		return (counters[STORE_READS] - from[STORE_READS]) * readLatency
+				+ (counters[SWAP_HITS] - from[SWAP_HITS]) * swapLatency
+				+ (counters[DIRTY_WRITES] - from[DIRTY_WRITES]) * writeLatency;
+	}
+}
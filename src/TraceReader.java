@@ -0,0 +1,215 @@
+/**
+ * description : Streaming reader of address trace files.
+ * 				Each line holds a decimal logical address, optionally followed by 'R' or 'W' for
+ * 				a read or a write. The file is read through a channel into one large buffer and
+ * 				the address and access flag are decoded in place from the bytes, so no String or
+ * 				boxed Integer is created per line. Address 0 is a valid address, blank lines are
+ * 				skipped, and malformed lines are reported on System.err and skipped instead of
+ * 				ending the run.
+ */
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class TraceReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int MAX_REPORTED_ERRORS = 10; // malformed lines
+														// printed before going
+														// quiet
+
+	private final String fileName;
+	private final FileInputStream in;
+	private final FileChannel channel;
+	private final byte bytes[];
+	private final ByteBuffer buffer; // wraps bytes, used to fill it from the
+										// channel
+	private long bufferOffset; // offset in the file of the first byte of the
+								// buffer
+	private int position; // next byte to decode
+	private int limit; // end of the valid bytes in the buffer
+	private boolean endOfFile;
+
+	private long address;
+	private boolean write;
+	private long lineNumber;
+	private long malformedLines;
+
+	public TraceReader(String fileName) throws IOException {
+		this.fileName = fileName;
+		in = new FileInputStream(fileName);
+		channel = in.getChannel();
+		bytes = new byte[BUFFER_SIZE];
+		buffer = ByteBuffer.wrap(bytes);
+		position = 0;
+		limit = 0;
+		endOfFile = false;
+	}
+
+	/**
+	 * Decode the next record of the trace
+	 *
+	 * @return false at the end of the file
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			int c = read();
+			if (c == -1)
+				return false;
+			lineNumber++;
+
+			c = skipBlanks(c);
+			if (c == '\n' || c == -1)
+				continue; // blank line
+
+			if (c < '0' || c > '9') {
+				malformed(c);
+				continue;
+			}
+
+			long value = 0;
+			while (c >= '0' && c <= '9') {
+				if (value > (Long.MAX_VALUE - (c - '0')) / 10) {
+					value = -1; // too large for a logical address
+					break;
+				}
+				value = value * 10 + (c - '0');
+				c = read();
+			}
+			if (value < 0) {
+				malformed(c);
+				continue;
+			}
+
+			boolean isWrite = false;
+			if (c == ' ' || c == '\t') {
+				c = skipBlanks(c);
+				if (c == 'W' || c == 'w') {
+					isWrite = true;
+					c = skipBlanks(read());
+				} else if (c == 'R' || c == 'r') {
+					c = skipBlanks(read());
+				}
+			} else {
+				c = skipBlanks(c);
+			}
+
+			if (c != '\n' && c != -1) {
+				malformed(c);
+				continue;
+			}
+
+			address = value;
+			write = isWrite;
+			return true;
+		}
+	}
+
+	/**
+	 * Logical address of the current record
+	 */
+	public long address() {
+		return address;
+	}
+
+	/**
+	 * True if the current record is a write ('W'), false for a read ('R') or
+	 * when the line has no access flag
+	 */
+	public boolean isWrite() {
+		return write;
+	}
+
+	/**
+	 * Line of the file holding the current record, starting at 1
+	 */
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * Offset in the file of the line following the current record, where a
+	 * run resumed with seek() starts reading
+	 */
+	public long getOffset() {
+		return bufferOffset + position;
+	}
+
+	/**
+	 * Continue reading at an offset given by getOffset()
+	 *
+	 * @param offset
+	 *            : offset of the start of a line
+	 * @param lineNumber
+	 *            : number of the line before that offset, for error messages
+	 */
+	public void seek(long offset, long lineNumber) throws IOException {
+		channel.position(offset);
+		bufferOffset = offset;
+		position = 0;
+		limit = 0;
+		endOfFile = false;
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * Number of lines skipped because they could not be decoded
+	 */
+	public long getMalformedLines() {
+		return malformedLines;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		in.close();
+	}
+
+	private int read() throws IOException {
+		if (position == limit) {
+			if (endOfFile)
+				return -1;
+			buffer.clear();
+			int n = channel.read(buffer);
+			while (n == 0)
+				n = channel.read(buffer);
+			if (n < 0) {
+				endOfFile = true;
+				return -1;
+			}
+			bufferOffset += limit;
+			position = 0;
+			limit = n;
+		}
+		return bytes[position++] & 0xFF;
+	}
+
+	/**
+	 * Skip spaces, tabs and carriage returns starting at c
+	 *
+	 * @return first other character
+	 */
+	private int skipBlanks(int c) throws IOException {
+		while (c == ' ' || c == '\t' || c == '\r')
+			c = read();
+		return c;
+	}
+
+	/**
+	 * Count the current line as malformed, report it and skip the rest of it
+	 */
+	private void malformed(int c) throws IOException {
+		malformedLines++;
+		if (malformedLines <= MAX_REPORTED_ERRORS) {
+			System.err.println(fileName + ":" + lineNumber + ": skipping malformed trace line");
+			if (malformedLines == MAX_REPORTED_ERRORS)
+				System.err.println(fileName + ": further malformed lines are skipped silently");
+		}
+
+		while (c != '\n' && c != -1)
+			c = read();
+	}
+}
@@ -0,0 +1,1023 @@
+/**
+ * description : Translation of logical addresses to physical addresses, shared by the translators.
+ * 				The engine owns physical memory, the TLB, the page table and the page replacement
+ * 				policy and translates one address per call to translate(), which allocates nothing.
+ * 				Physical memory is a PhysicalMemory off the heap with long physical addresses, so
+ * 				the number of frames is only bounded by direct memory.
+ * 				The translators read a trace and print the results, other programs can embed an
+ * 				engine and call translate() directly.
+ * 				Optional parts are added with setters: read-ahead with a Prefetcher, write-back of
+ * 				dirty pages with a WriteBehindFlusher, huge pages with HugePages, a second level TLB
+ * 				with a TLBHierarchy, Belady's policy with a NextUseIndex, simulated time with a
+ * 				TimingModel and live counters and latency histograms with SimulatorMetrics.
+ * 				sameSize(), modifiedSize() and dirtyBit() build the engines of the three translators.
+ * 				The state of an engine can be saved to a Snapshot and restored into a new engine of
+ * 				the same configuration, which then goes on as if it had translated the addresses
+ * 				itself.
+ */
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class TranslationEngine implements Closeable {
+
+	public static final long INVALID_ADDRESS = -1; // result of an address
+													// outside the address
+													// space
+
+	private final AddressGeometry geometry;
+	private final int SIZE; // Size of page and frame
+	private final int frames;
+
+	private final BackingStore backingStore;
+	private final ByteBuffer storeViews[]; // Views of the mapped backing
+											// store used by the reads
+	private final TranslationLookasideBuffer TLB;
+	private TLBHierarchy TLBLevels = null; // Second level TLB behind TLB,
+											// null for a single level
+	private final PageTable pageTable;
+	private final ReplacementPolicy policy;
+
+	private final PhysicalMemory physicalMemory; // Frames, off the heap
+	private final long framePage[]; // Page held by each frame of physical
+									// memory
+	private int framePointer; // Next free frame, frames when memory is full
+
+	private NextUseIndex nextUseIndex = null; // Next use of every access, only
+												// set for the opt policy
+
+	private Prefetcher prefetcher = null; // Read-ahead on page faults
+	private long loadPages[] = null; // Pages loaded by one page fault, by page
+										// number
+	private int loadFrames[] = null; // Frame of each loaded page
+	private ByteBuffer loadBuffers[] = null; // Frame of each page of a run
+												// read at once
+
+	private WriteBehindFlusher flusher = null; // Write-back of dirty pages,
+												// writes are ignored without
+												// it
+	private long dirtyFrames[] = null; // Dirty bit of every frame, one bit per
+										// frame
+	private int dirtyCount; // Number of dirty frames
+	private int highWatermark; // Dirty frames above which the frames are
+								// cleaned ahead of eviction
+	private int lowWatermark; // Dirty frames left after cleaning
+	private int cleanHand; // Next frame looked at when cleaning
+
+	private HugePages hugePages = null; // Reservations and promotions of huge
+										// pages, frames are allocated by it when
+										// set
+	private CompressedSwapTier swapTier = null; // Compressed copies of
+												// evicted pages, looked up
+												// before the backing store
+
+	private TimingModel timing = null; // Simulated time of the accesses
+	private long timingCounters[] = null; // Counters handed to the model
+	private long nextTimingWindow = Long.MAX_VALUE; // Translations ending the
+													// current timing window
+
+	private SimulatorMetrics metrics = null; // Live instrumentation, the
+												// translations are not timed
+												// without it
+
+	private int value; // Value read by the last translation
+	private int lastDirtyEvictions; // Dirty pages evicted by the last
+									// translation
+
+	// Statistics
+	private long translations;
+	private long TLBHits;
+	private long pageTableLookups; // Lookups made after a TLB miss
+	private long pageTableHits;
+	private long pageFaults;
+	private long invalidAddresses; // Addresses outside the address space
+	private long storeReads; // Reads of the backing store
+	private long dirtyEvictions; // Dirty pages written back on eviction
+	private long cleanedAhead; // Dirty pages written back before their
+								// eviction
+	private long hugeTLBHits; // TLB hits on a huge page entry
+	private long hugeWalks; // Walks ended at a promoted huge page
+	private long fragmentationSum; // Free frames of huge page reservations,
+									// summed over the translations
+	private long restoredWalkReferences; // Page table references made before
+											// the snapshot the engine was
+											// restored from
+
+	/**
+	 * @param geometry
+	 *            : page size and address width
+	 * @param frames
+	 *            : number of frames of physical memory
+	 * @param backingStore
+	 *            : store holding the pages, its page size must be the page
+	 *            size of the geometry
+	 * @param TLB
+	 *            : translation lookaside buffer
+	 * @param pageTable
+	 *            : page table able to map the pages of the geometry
+	 * @param policy
+	 *            : page replacement policy over the frames
+	 */
+	public TranslationEngine(AddressGeometry geometry, int frames, BackingStore backingStore,
+			TranslationLookasideBuffer TLB, PageTable pageTable, ReplacementPolicy policy) {
+		if (backingStore.getPageSize() != geometry.getPageSize())
+			throw new IllegalArgumentException("Backing store pages of " + backingStore.getPageSize()
+					+ " bytes do not match pages of " + geometry.getPageSize() + " bytes");
+		if (frames <= 0)
+			throw new IllegalArgumentException("Invalid frame count " + frames);
+
+		this.geometry = geometry;
+		this.SIZE = geometry.getPageSize();
+		this.frames = frames;
+		this.backingStore = backingStore;
+		this.storeViews = backingStore.newViews();
+		this.TLB = TLB;
+		this.pageTable = pageTable;
+		this.policy = policy;
+
+		physicalMemory = PhysicalMemory.fromSystemProperties(frames, SIZE);
+		framePage = new long[frames];
+		framePointer = 0;
+	}
+
+	/**
+	 * Engine of SameSizeTranslation: 256 byte pages, 16 bit addresses and as
+	 * many frames as pages, so no page is ever replaced. The 16 entry TLB
+	 * replaces its oldest entry
+	 */
+	public static TranslationEngine sameSize(BackingStore backingStore) {
+		AddressGeometry geometry = new AddressGeometry(256, 16);
+		int frames = (int) geometry.getPageCount();
+
+		return new TranslationEngine(geometry, frames, backingStore,
+				new TranslationLookasideBuffer(16, 16, TranslationLookasideBuffer.Policy.FIFO),
+				new FlatPageTable(geometry.getPageCount()), new FIFOReplacement(frames));
+	}
+
+	/**
+	 * Engine of ModifiedSizeTranslation: fewer frames than pages, with the
+	 * TLB, page table, replacement policy and prefetcher given by the system
+	 * properties
+	 */
+	public static TranslationEngine modifiedSize(AddressGeometry geometry, BackingStore backingStore) {
+		int frames = Integer.getInteger("frames", 128);
+
+		TranslationEngine engine = new TranslationEngine(geometry, frames, backingStore,
+				TranslationLookasideBuffer.fromSystemProperties(), PageTable.fromSystemProperties(geometry, frames),
+				ReplacementPolicy.fromSystemProperties(frames));
+		engine.setTLBHierarchy(TLBHierarchy.fromSystemProperties(engine.getTLB()));
+		engine.setPrefetcher(Prefetcher.fromSystemProperties(frames));
+		engine.setHugePages(HugePages.fromSystemProperties(frames));
+		engine.setSwapTier(CompressedSwapTier.fromSystemProperties(geometry.getPageSize(), frames));
+		engine.setTimingModel(TimingModel.fromSystemProperties());
+
+		return engine;
+	}
+
+	/**
+	 * Engine of DirtyBitTranslation: the engine of ModifiedSizeTranslation
+	 * writing its dirty pages back, with the flusher and watermarks given by
+	 * the writeback.slots, writeback.high and writeback.low system properties
+	 *
+	 * @param backingStore
+	 *            : writable backing store, see BackingStore.writableCopy()
+	 */
+	public static TranslationEngine dirtyBit(AddressGeometry geometry, BackingStore backingStore) {
+		TranslationEngine engine = modifiedSize(geometry, backingStore);
+		engine.setWriteBack(WriteBehindFlusher.fromSystemProperties(backingStore),
+				Integer.getInteger("writeback.high", 50), Integer.getInteger("writeback.low", 25));
+
+		return engine;
+	}
+
+	/**
+	 * Read ahead pages on page faults
+	 *
+	 * @param prefetcher
+	 *            : prefetcher sized for the frames of the engine, null to turn
+	 *            prefetching off
+	 */
+	public void setPrefetcher(Prefetcher prefetcher) {
+		if (prefetcher != null && policy instanceof OPTReplacement)
+			throw new IllegalArgumentException("The opt policy cannot be combined with prefetching");
+
+		this.prefetcher = prefetcher;
+		if (prefetcher != null && loadPages == null) {
+			loadPages = new long[frames];
+			loadFrames = new int[frames];
+			loadBuffers = new ByteBuffer[frames];
+		}
+	}
+
+	/**
+	 * Apply writes to physical memory and write dirty pages back to the
+	 * backing store. Without write-back the backing store is read only and
+	 * writes are translated like reads
+	 *
+	 * @param flusher
+	 *            : flusher writing to the backing store of the engine, closed
+	 *            with the engine
+	 * @param highPercent
+	 *            : percentage of dirty frames above which frames are cleaned
+	 *            ahead of their eviction
+	 * @param lowPercent
+	 *            : percentage of dirty frames left by the cleaning
+	 */
+	public void setWriteBack(WriteBehindFlusher flusher, int highPercent, int lowPercent) {
+		if (lowPercent < 0 || lowPercent > highPercent)
+			throw new IllegalArgumentException("Invalid watermarks " + lowPercent + "% to " + highPercent + "%");
+
+		this.flusher = flusher;
+		dirtyFrames = new long[(frames + 63) >>> 6];
+		highWatermark = (int) ((long) frames * highPercent / 100);
+		lowWatermark = (int) ((long) frames * lowPercent / 100);
+	}
+
+	/**
+	 * Back dense regions of the address space with huge pages. Must be set
+	 * before the first translation, since it takes over the allocation of
+	 * frames
+	 *
+	 * @param hugePages
+	 *            : huge pages sized for the frames of the engine, null to use
+	 *            base pages only
+	 */
+	public void setHugePages(HugePages hugePages) {
+		if (translations > 0)
+			throw new IllegalStateException("Huge pages must be set before the first translation");
+
+		this.hugePages = hugePages;
+	}
+
+	/**
+	 * Keep compressed copies of the evicted pages in memory, where page faults
+	 * look them up before reading the backing store
+	 *
+	 * @param swapTier
+	 *            : tier sized for the frames of the engine, null to read
+	 *            every page fault from the backing store
+	 */
+	public void setSwapTier(CompressedSwapTier swapTier) {
+		this.swapTier = swapTier;
+	}
+
+	/**
+	 * Turn the counts of the access paths into simulated time
+	 *
+	 * @param timing
+	 *            : model giving the latencies, null to turn it off
+	 */
+	public void setTimingModel(TimingModel timing) {
+		this.timing = timing;
+		if (timing != null && timingCounters == null)
+			timingCounters = new long[TimingModel.COUNTERS];
+		startTimingWindow();
+	}
+
+	/**
+	 * Put a second level TLB behind the TLB of the engine
+	 *
+	 * @param TLBLevels
+	 *            : hierarchy whose first level is the TLB of the engine, null
+	 *            for a single level
+	 */
+	public void setTLBHierarchy(TLBHierarchy TLBLevels) {
+		if (TLBLevels != null && TLBLevels.getFirstLevel() != TLB)
+			throw new IllegalArgumentException("The first level of the hierarchy must be the TLB of the engine");
+		if (TLBLevels != null && translations > 0)
+			throw new IllegalStateException("The TLB hierarchy must be set before the first translation");
+
+		this.TLBLevels = TLBLevels;
+	}
+
+	/**
+	 * Give Belady's policy the next use of every translated address
+	 *
+	 * @param nextUseIndex
+	 *            : index built from the trace that will be translated
+	 */
+	public void setNextUseIndex(NextUseIndex nextUseIndex) {
+		if (!(policy instanceof OPTReplacement))
+			throw new IllegalArgumentException("Only the opt policy uses a next-use index");
+
+		this.nextUseIndex = nextUseIndex;
+	}
+
+	/**
+	 * Count the events of the engine and time every translation
+	 *
+	 * @param metrics
+	 *            : metrics receiving the counts, null to turn them off
+	 */
+	public void setMetrics(SimulatorMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Translate a logical address. The value at the address is given by
+	 * getValue(); with write-back a write then stores the low byte of the
+	 * logical address there
+	 *
+	 * @param logicalAddress
+	 *            : address to translate
+	 * @param write
+	 *            : true for a write access
+	 * @return physical address, INVALID_ADDRESS if the logical address is
+	 *         outside the address space
+	 */
+	public long translate(long logicalAddress, boolean write) throws IOException {
+		lastDirtyEvictions = 0;
+
+		if (!geometry.contains(logicalAddress)) {
+			invalidAddresses++;
+			return INVALID_ADDRESS;
+		}
+
+		long start = (metrics != null) ? System.nanoTime() : 0;
+		long pageNumber = geometry.pageNumber(logicalAddress);
+		int offset = geometry.offset(logicalAddress);
+
+		if (nextUseIndex != null)
+			((OPTReplacement) policy).setNextUse(nextUseIndex.next());
+
+		// Look up the TLB, this also updates the replacement data of the
+		// entry
+		int frameNumber = (TLBLevels == null) ? TLB.lookup(pageNumber) : TLBLevels.lookup(pageNumber);
+		if (frameNumber == -1 && hugePages != null)
+			frameNumber = lookupHugeTLB(pageNumber);
+
+		if (frameNumber != -1) { // TLB hit
+			TLBHits++;
+			policy.touch(frameNumber); // Record the reference for page
+										// replacement
+			if (metrics != null)
+				metrics.TLBHit(System.nanoTime() - start);
+		} else if ((frameNumber = lookupPageTable(pageNumber)) != -1) {
+			// Page table hit
+			policy.touch(frameNumber); // Record the reference for page
+										// replacement
+			if (prefetcher != null)
+				prefetcher.referenced(frameNumber); // the page may have been
+													// read ahead
+			if (metrics != null)
+				metrics.pageWalk(System.nanoTime() - start);
+		} else { // Page fault
+			pageFaults++;
+			frameNumber = handlePageFault(pageNumber);
+
+			insertTLB(pageNumber, frameNumber); // add the page to TLB
+			mapPage(pageNumber, frameNumber); // add the page to page table
+			if (metrics != null)
+				metrics.pageFault(System.nanoTime() - start);
+		}
+
+		translations++;
+		if (translations == nextTimingWindow)
+			endTimingWindow();
+		if (hugePages != null)
+			fragmentationSum += hugePages.getHoles();
+
+		long physicalAddress = physicalMemory.address(frameNumber) + offset;
+		value = physicalMemory.get(physicalAddress); // value before the access
+
+		if (write && flusher != null) {
+			physicalMemory.put(physicalAddress, (byte) logicalAddress);
+			setDirty(frameNumber);
+			if (dirtyCount > highWatermark)
+				cleanAhead();
+		}
+
+		return physicalAddress;
+	}
+
+	/**
+	 * Value read by the last translation, as a signed byte
+	 */
+	public int getValue() {
+		return value;
+	}
+
+	/**
+	 * Number of dirty pages the last translation evicted and handed to the
+	 * flusher
+	 */
+	public int getLastDirtyEvictions() {
+		return lastDirtyEvictions;
+	}
+
+	/**
+	 * Write every dirty page still in memory back and wait for the writes, so
+	 * that the backing store is up to date
+	 */
+	public void sync() throws IOException {
+		if (flusher == null)
+			return;
+
+		for (int frame = 0; frame < frames; frame++) {
+			if (isDirty(frame)) {
+				flusher.submit(framePage[frame], physicalMemory.frame(frame));
+				clearDirty(frame);
+			}
+		}
+		flusher.drain();
+	}
+
+	/**
+	 * Stop the flusher after its last writes. The backing store is left open
+	 */
+	@Override
+	public void close() throws IOException {
+		if (flusher != null)
+			flusher.close();
+	}
+
+	/**
+	 * Print the rates and the page table, prefetch and write-back figures
+	 */
+	public void printStatistics() {
+
+		float pageFaultRate = (float) pageFaults / translations;
+		float TLBHitRate = (float) TLBHits / translations;
+
+		System.out.println("Page Fault Rate : " + pageFaultRate);
+		System.out.println("TLB Hit Rate : " + TLBHitRate);
+		System.out.println("Page Table Hit Rate : " + (float) pageTableHits / pageTableLookups);
+		System.out.println("Page Table : " + pageTable.getName() + ", " + pageTable.getTableBytes() + " bytes, "
+				+ (float) (pageTable.getWalkReferences() + restoredWalkReferences) / pageTableLookups
+				+ " references per walk");
+		if (TLBLevels != null) {
+			System.out.println("TLB Hierarchy : " + TLBLevels);
+			System.out.println("L1 TLB Hit Rate : " + (float) TLBLevels.getFirstLevelHits() / translations
+					+ ", L2 TLB Hit Rate : "
+					+ (float) TLBLevels.getSecondLevelHits() / TLBLevels.getSecondLevelLookups()
+					+ " of L1 misses, Page Walk Rate : " + (float) pageTableLookups / translations + ", "
+					+ TLBLevels.getBackInvalidations() + " L1 entries back-invalidated");
+		}
+		if (invalidAddresses > 0)
+			System.out.println("Addresses outside the address space : " + invalidAddresses);
+		if (prefetcher != null) {
+			System.out.println("Prefetch Accuracy : " + prefetcher.getAccuracy() + ", Coverage : "
+					+ prefetcher.getCoverage() + " (" + prefetcher.getIssued() + " pages read ahead, "
+					+ prefetcher.getUseful() + " used, " + prefetcher.getWasted() + " evicted unused)");
+			System.out.println("Backing Store Reads : " + storeReads + " for " + pageFaults + " page faults");
+		}
+		if (hugePages != null) {
+			System.out.println("Huge Pages : " + hugePages.getBasePages() + " base pages each, "
+					+ hugePages.getPromotions() + " promotions, " + hugePages.getDemotions() + " demotions, "
+					+ hugePages.getReservationsBroken() + " of " + hugePages.getReservationsMade()
+					+ " reservations broken");
+			System.out.println("Huge Page TLB Hits : " + hugeTLBHits + " of " + TLBHits + " TLB hits, " + hugeWalks
+					+ " walks ended at a huge page");
+			float meanHoles = (float) fragmentationSum / translations;
+			System.out.println("Internal Fragmentation : " + meanHoles + " free reserved frames on average ("
+					+ 100 * meanHoles / frames + "% of physical memory), " + hugePages.getHoles() + " at the end");
+		}
+		if (swapTier != null)
+			swapTier.printStatistics();
+		if (timing != null)
+			timing.printStatistics(getTimingCounters());
+		if (metrics != null)
+			metrics.printStatistics();
+	}
+
+	/**
+	 * Print how the dirty pages were written back. The writes and waits of
+	 * the flusher depend on the timing of its thread and change from run to
+	 * run, so they are only printed with the writeback.stats system property
+	 */
+	public void printWriteBackStatistics() {
+		if (flusher == null)
+			return;
+
+		System.out.println("Pages cleaned ahead of eviction : " + cleanedAhead);
+		if (!Boolean.getBoolean("writeback.stats"))
+			return;
+		System.out.println("Pages written back : " + flusher.getPagesWritten() + " in " + flusher.getWriteCalls()
+				+ " writes, " + flusher.getPagesCoalesced() + " rewrites merged while queued");
+		System.out.println("Page faults waiting on write-back : " + flusher.getFaultWaits()
+				+ ", submissions waiting for a free slot : " + flusher.getFullWaits());
+	}
+
+	/**
+	 * Write the state of the engine to a snapshot: its configuration, the
+	 * pages of the frames, the counters, the dirty bits, the TLB and the state
+	 * of the replacement policy. Physical memory is written by saveMemory()
+	 */
+	public void saveState(DataOutput out) throws IOException {
+		checkSnapshotSupport();
+
+		out.writeInt(SIZE);
+		out.writeInt(geometry.getAddressBits());
+		out.writeInt(frames);
+		out.writeUTF(policy.getName());
+		out.writeBoolean(flusher != null);
+
+		out.writeInt(framePointer);
+		for (int frame = 0; frame < framePointer; frame++)
+			out.writeLong(framePage[frame]);
+
+		out.writeLong(translations);
+		out.writeLong(TLBHits);
+		out.writeLong(pageTableLookups);
+		out.writeLong(pageTableHits);
+		out.writeLong(pageFaults);
+		out.writeLong(invalidAddresses);
+		out.writeLong(storeReads);
+		out.writeLong(dirtyEvictions);
+		out.writeLong(cleanedAhead);
+		out.writeLong(pageTable.getWalkReferences() + restoredWalkReferences);
+
+		if (flusher != null) {
+			out.writeInt(dirtyCount);
+			out.writeInt(cleanHand);
+			for (long word : dirtyFrames)
+				out.writeLong(word);
+		}
+
+		TLB.save(out);
+		policy.save(out);
+	}
+
+	/**
+	 * Restore the state written by saveState() into an engine that has not
+	 * translated anything yet. The page table is rebuilt from the pages of the
+	 * frames. With the opt policy the next-use index must be set first
+	 */
+	public void restoreState(DataInput in) throws IOException {
+		checkSnapshotSupport();
+		if (translations > 0 || framePointer > 0)
+			throw new IllegalStateException("A snapshot can only be restored into a new engine");
+
+		int pageSize = in.readInt();
+		int addressBits = in.readInt();
+		int savedFrames = in.readInt();
+		String policyName = in.readUTF();
+		boolean writeBack = in.readBoolean();
+		if (pageSize != SIZE || addressBits != geometry.getAddressBits() || savedFrames != frames
+				|| !policyName.equals(policy.getName()) || writeBack != (flusher != null))
+			throw new IOException("Snapshot of " + savedFrames + " frames of " + pageSize + " bytes, " + addressBits
+					+ " bit addresses and " + policyName + (writeBack ? " with" : " without")
+					+ " write-back does not match the engine");
+
+		framePointer = in.readInt();
+		for (int frame = 0; frame < framePointer; frame++) {
+			framePage[frame] = in.readLong();
+			pageTable.map(framePage[frame], frame);
+		}
+
+		translations = in.readLong();
+		TLBHits = in.readLong();
+		pageTableLookups = in.readLong();
+		pageTableHits = in.readLong();
+		pageFaults = in.readLong();
+		invalidAddresses = in.readLong();
+		storeReads = in.readLong();
+		dirtyEvictions = in.readLong();
+		cleanedAhead = in.readLong();
+		restoredWalkReferences = in.readLong() - pageTable.getWalkReferences();
+
+		if (writeBack) {
+			dirtyCount = in.readInt();
+			cleanHand = in.readInt();
+			for (int i = 0; i < dirtyFrames.length; i++)
+				dirtyFrames[i] = in.readLong();
+		}
+
+		TLB.restore(in);
+		policy.restore(in);
+		startTimingWindow();
+
+		if (nextUseIndex != null)
+			nextUseIndex.seek((int) translations);
+	}
+
+	/**
+	 * Bytes of physical memory holding pages, the part of physical memory
+	 * saved in a snapshot
+	 */
+	public long getResidentBytes() {
+		return physicalMemory.address(framePointer);
+	}
+
+	public PhysicalMemory getPhysicalMemory() {
+		return physicalMemory;
+	}
+
+	/**
+	 * Write the frames holding pages to a file, straight from the direct
+	 * buffers of physical memory
+	 *
+	 * @param channel
+	 *            : snapshot file, open for writing
+	 * @param position
+	 *            : offset of physical memory in the file
+	 */
+	public void saveMemory(FileChannel channel, long position) throws IOException {
+		physicalMemory.write(channel, position, framePointer);
+	}
+
+	/**
+	 * Read the frames written by saveMemory(), after restoreState()
+	 */
+	public void restoreMemory(FileChannel channel, long position) throws IOException {
+		physicalMemory.read(channel, position, framePointer);
+	}
+
+	/**
+	 * Snapshots cover every part of the engine but the prefetcher, the huge
+	 * pages, the compressed swap tier and the second level TLB
+	 */
+	private void checkSnapshotSupport() {
+		if (prefetcher != null || hugePages != null || swapTier != null || TLBLevels != null)
+			throw new IllegalStateException(
+					"Snapshots do not cover prefetching, huge pages, compressed swap or a second level TLB");
+	}
+
+	/**
+	 * Load the page into a free frame, or into the frame of the victim chosen
+	 * by the replacement policy
+	 *
+	 * @return frame now holding the page
+	 */
+	private int handlePageFault(long pageNumber) throws IOException {
+		int frameNumber = allocateFrame(pageNumber, pageNumber);
+
+		if (swapTier != null && swapTier.load(pageNumber, physicalMemory.frame(frameNumber))) {
+			framePage[frameNumber] = pageNumber; // no read and no read ahead,
+													// the page was still in
+													// memory
+		} else if (prefetcher == null) {
+			if (flusher != null)
+				flusher.awaitPage(pageNumber); // a dirty copy of the page may
+												// still be on its way to the
+												// store
+			backingStore.readPage(pageNumber, physicalMemory.frame(frameNumber), storeViews);
+			framePage[frameNumber] = pageNumber;
+			storeReads++;
+		} else {
+			readAhead(pageNumber, frameNumber);
+		}
+
+		return frameNumber;
+	}
+
+	/**
+	 * Find a frame for a page being loaded. Before loading a page to main
+	 * memory check Main memory's size. If the size is full, first ask the
+	 * replacement policy for the victim frame and remove its page, writing it
+	 * back if it is dirty. If the size is not full, add the new page to Main
+	 * memory. With huge pages the frame comes from the reservation of the
+	 * region of the page whenever possible
+	 *
+	 * @param faultPage
+	 *            : page whose fault is being handled, given to the policy
+	 * @param page
+	 *            : page the frame is for, the faulting page or a page read
+	 *            ahead
+	 * @return frame that will hold the page
+	 */
+	private int allocateFrame(long faultPage, long page) throws IOException {
+		if (hugePages != null) {
+			int frame = hugePages.allocate(page);
+			if (frame != -1)
+				return frame;
+		} else if (framePointer < frames) {
+			return framePointer++;
+		}
+
+		int victimFrame = policy.victim(faultPage);
+		long victimPage = framePage[victimFrame];
+
+		if (flusher != null && isDirty(victimFrame)) {
+			// the flusher writes the page back while the new page is loaded
+			flusher.submit(victimPage, physicalMemory.frame(victimFrame));
+			clearDirty(victimFrame);
+			dirtyEvictions++;
+			lastDirtyEvictions++;
+			if (metrics != null)
+				metrics.dirtyWriteBack();
+		}
+		if (metrics != null)
+			metrics.eviction();
+		// the tier keeps a clean copy, dirty pages are written back as well
+		if (swapTier != null)
+			swapTier.store(victimPage, physicalMemory.frame(victimFrame));
+
+		pageTable.unmap(victimPage); // update page table for victim page
+										// indicating it has been removed
+		// update TLB for victim page indicating it has been removed
+		if (TLBLevels == null)
+			TLB.invalidate(victimPage);
+		else
+			TLBLevels.invalidate(victimPage);
+		if (prefetcher != null)
+			prefetcher.evicted(victimFrame);
+
+		if (hugePages != null) {
+			long demoted = hugePages.release(victimFrame);
+			if (demoted != -1) { // the region is back to base pages
+				if (TLBLevels == null)
+					TLB.invalidateHuge(demoted);
+				else
+					TLBLevels.invalidateHuge(demoted);
+			}
+			return hugePages.allocate(page);
+		}
+
+		return victimFrame;
+	}
+
+	/**
+	 * Load the faulting page together with the pages predicted by the
+	 * prefetcher. The pages are sorted and each run of adjacent pages is read
+	 * from the backing store at once. The predicted pages are added to the
+	 * page table but not to the TLB, the faulting page is added by the caller
+	 */
+	private void readAhead(long pageNumber, int frameNumber) throws IOException {
+		int predicted = prefetcher.fault(pageNumber);
+
+		int count = 0;
+		loadPages[count] = pageNumber;
+		loadFrames[count++] = frameNumber;
+
+		for (int i = 0; i < predicted; i++) {
+			long page = prefetcher.getPredicted(i);
+			if (page < 0 || page >= geometry.getPageCount() || pageTable.contains(page))
+				continue; // outside the address space or already resident
+
+			int frame = allocateFrame(pageNumber, page);
+			// Insertion sort by page number, the batch is a few pages long
+			int j = count++;
+			while (j > 0 && loadPages[j - 1] > page) {
+				loadPages[j] = loadPages[j - 1];
+				loadFrames[j] = loadFrames[j - 1];
+				j--;
+			}
+			loadPages[j] = page;
+			loadFrames[j] = frame;
+		}
+
+		if (flusher != null) {
+			for (int i = 0; i < count; i++)
+				flusher.awaitPage(loadPages[i]);
+		}
+
+		int start = 0;
+		while (start < count) {
+			int end = start + 1;
+			while (end < count && loadPages[end] == loadPages[end - 1] + 1)
+				end++;
+
+			for (int i = start; i < end; i++)
+				loadBuffers[i - start] = physicalMemory.frame(loadFrames[i], i - start);
+			backingStore.readPages(loadPages[start], loadBuffers, end - start, storeViews);
+			storeReads++;
+			start = end;
+		}
+
+		for (int i = 0; i < count; i++) {
+			framePage[loadFrames[i]] = loadPages[i];
+			if (loadPages[i] != pageNumber) {
+				mapPage(loadPages[i], loadFrames[i]);
+				prefetcher.prefetched(loadFrames[i]);
+			}
+		}
+	}
+
+	/**
+	 * Look the page up in the page table after a TLB miss and count the walk
+	 *
+	 * @return frame of the page, -1 if the page is not in memory
+	 */
+	private int lookupPageTable(long page) {
+		pageTableLookups++;
+
+		if (hugePages != null) {
+			int firstFrame = hugePages.firstFrame(page);
+			if (firstFrame != -1) { // the walk ends at the huge page, which
+									// is loaded into the TLB
+				pageTableHits++;
+				hugeWalks++;
+				insertHugeTLB(hugePages.regionOf(page), firstFrame);
+				return hugePages.frameOf(firstFrame, page);
+			}
+		}
+
+		int frame = pageTable.lookup(page);
+		if (frame != -1)
+			pageTableHits++;
+		return frame;
+	}
+
+	/**
+	 * Add the page to the page table and let the replacement policy track it.
+	 * A page completing the region of a huge page promotes the region
+	 */
+	private void mapPage(long newPage, int newFrame) {
+		pageTable.map(newPage, newFrame);
+		policy.admit(newFrame, newPage);
+
+		if (hugePages != null) {
+			int firstFrame = hugePages.promote(newPage);
+			if (firstFrame != -1)
+				insertHugeTLB(hugePages.regionOf(newPage), firstFrame);
+		}
+	}
+
+	/**
+	 * Start a timing window at the current counters, the next one ending
+	 * after a whole number of windows since the first translation
+	 */
+	private void startTimingWindow() {
+		if (timing == null || timing.getWindow() == 0) {
+			nextTimingWindow = Long.MAX_VALUE;
+			return;
+		}
+		timing.start(getTimingCounters());
+		nextTimingWindow = (translations / timing.getWindow() + 1) * timing.getWindow();
+	}
+
+	private void endTimingWindow() {
+		timing.window(getTimingCounters());
+		nextTimingWindow += timing.getWindow();
+	}
+
+	/**
+	 * Counters of the access paths, in the layout of TimingModel
+	 */
+	private long[] getTimingCounters() {
+		timingCounters[TimingModel.TRANSLATIONS] = translations;
+		timingCounters[TimingModel.SECOND_LEVEL_LOOKUPS] = (TLBLevels == null) ? 0
+				: TLBLevels.getSecondLevelLookups();
+		timingCounters[TimingModel.WALK_REFERENCES] = pageTable.getWalkReferences() + restoredWalkReferences;
+		timingCounters[TimingModel.STORE_READS] = storeReads;
+		timingCounters[TimingModel.SWAP_HITS] = (swapTier == null) ? 0 : swapTier.getHits();
+		timingCounters[TimingModel.DIRTY_WRITES] = dirtyEvictions;
+		return timingCounters;
+	}
+
+	/**
+	 * Look the page up in the huge page entries of the TLB
+	 *
+	 * @return frame of the page, -1 if its huge page is not in the TLB
+	 */
+	private int lookupHugeTLB(long page) {
+		long region = hugePages.regionOf(page);
+		int firstFrame = (TLBLevels == null) ? TLB.lookupHuge(region) : TLBLevels.lookupHuge(region);
+		if (firstFrame == -1)
+			return -1;
+
+		hugeTLBHits++;
+		return hugePages.frameOf(firstFrame, page);
+	}
+
+	/**
+	 * Add a page to the TLB after a page fault, to both levels or to the first
+	 * one depending on the hierarchy
+	 */
+	private void insertTLB(long page, int frame) {
+		if (TLBLevels == null)
+			TLB.insert(page, frame);
+		else
+			TLBLevels.insert(page, frame);
+	}
+
+	private void insertHugeTLB(long hugePage, int firstFrame) {
+		if (TLBLevels == null)
+			TLB.insertHuge(hugePage, firstFrame);
+		else
+			TLBLevels.insertHuge(hugePage, firstFrame);
+	}
+
+	/**
+	 * Hand dirty frames to the flusher until only lowWatermark of them are
+	 * left, so that their pages are clean when they are evicted. The frames
+	 * are visited in turn like the hand of a clock
+	 */
+	private void cleanAhead() throws IOException {
+		while (dirtyCount > lowWatermark) {
+			if (isDirty(cleanHand)) {
+				flusher.submit(framePage[cleanHand], physicalMemory.frame(cleanHand));
+				clearDirty(cleanHand);
+				cleanedAhead++;
+				if (metrics != null)
+					metrics.dirtyWriteBack();
+			}
+			cleanHand = (cleanHand + 1) % frames;
+		}
+	}
+
+	private boolean isDirty(int frame) {
+		return (dirtyFrames[frame >>> 6] & (1L << frame)) != 0;
+	}
+
+	private void setDirty(int frame) {
+		if (!isDirty(frame)) {
+			dirtyFrames[frame >>> 6] |= 1L << frame;
+			dirtyCount++;
+		}
+	}
+
+	private void clearDirty(int frame) {
+		if (isDirty(frame)) {
+			dirtyFrames[frame >>> 6] &= ~(1L << frame);
+			dirtyCount--;
+		}
+	}
+
+	public BackingStore getBackingStore() {
+		return backingStore;
+	}
+
+	public AddressGeometry getGeometry() {
+		return geometry;
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	public TranslationLookasideBuffer getTLB() {
+		return TLB;
+	}
+
+	public TLBHierarchy getTLBHierarchy() {
+		return TLBLevels;
+	}
+
+	public PageTable getPageTable() {
+		return pageTable;
+	}
+
+	public ReplacementPolicy getPolicy() {
+		return policy;
+	}
+
+	public Prefetcher getPrefetcher() {
+		return prefetcher;
+	}
+
+	public HugePages getHugePages() {
+		return hugePages;
+	}
+
+	public CompressedSwapTier getSwapTier() {
+		return swapTier;
+	}
+
+	public SimulatorMetrics getMetrics() {
+		return metrics;
+	}
+
+	public WriteBehindFlusher getFlusher() {
+		return flusher;
+	}
+
+	public long getTranslations() {
+		return translations;
+	}
+
+	public long getTLBHits() {
+		return TLBHits;
+	}
+
+	public long getPageTableLookups() {
+		return pageTableLookups;
+	}
+
+	public long getPageTableHits() {
+		return pageTableHits;
+	}
+
+	public long getPageFaults() {
+		return pageFaults;
+	}
+
+	public long getInvalidAddresses() {
+		return invalidAddresses;
+	}
+
+	public long getStoreReads() {
+		return storeReads;
+	}
+
+	public long getDirtyEvictions() {
+		return dirtyEvictions;
+	}
+
+	public long getCleanedAhead() {
+		return cleanedAhead;
+	}
+
+	public long getHugeTLBHits() {
+		return hugeTLBHits;
+	}
+
+	public long getHugeWalks() {
+		return hugeWalks;
+	}
+}
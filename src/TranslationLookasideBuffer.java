@@ -0,0 +1,388 @@
+/**
+ * description : Translation lookaside buffer built from parallel primitive arrays.
+ * 				Entries are grouped in sets, the set of a page being chosen by its page number.
+ * 				With one way per set the TLB is direct mapped, with as many ways as entries it is
+ * 				fully associative and anything in between is N-way set associative.
+ * 				Lookups and insertions only read and write the arrays, so nothing is allocated on
+ * 				a hit or on a miss.
+ * 				Every entry is tagged with the address space ID (ASID) of its process, so the
+ * 				entries of several processes can live in the TLB together and a context switch
+ * 				does not need a flush. Single process translators use ASID 0.
+ * 				Entries of huge pages share the arrays with base page entries. They are tagged with
+ * 				HUGE_PAGE and hold the huge page number and its first frame, so a translator looks a
+ * 				page up a second time under its huge page number when the base lookup misses.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class TranslationLookasideBuffer {
+
+	/**
+	 * Replacement policy used to pick the victim way inside a full set
+	 */
+	public enum Policy {
+		LRU, // least recently used entry
+		FIFO, // oldest inserted entry
+		LFU, // entry with the fewest hits
+		RANDOM // any entry of the set
+	}
+
+	public static final int DEFAULT_ENTRIES = 16;
+
+	public static final long HUGE_PAGE = 1L << 62; // tag of the entries
+													// mapping a huge page
+
+	private final int entries;
+	private final int ways;
+	private final int sets;
+	private final int setMask; // sets - 1 when sets is a power of two, else -1
+	private final Policy policy;
+
+	// Entry i of the TLB is made of asids[i], pages[i], frames[i] and
+	// stamps[i]
+	// asids : address space the page belongs to
+	// pages : page number held by the entry, -1 when the entry is empty
+	// frames : frame number of the page
+	// stamps : replacement metadata, last access time for LRU, insertion
+	// time for FIFO and hit counter for LFU
+	private final int asids[];
+	private final long pages[];
+	private final int frames[];
+	private final long stamps[];
+
+	private long clock; // logical time, incremented on every access
+	private long seed; // state of the random generator for RANDOM policy
+	private int size;
+	private int evictedAsid; // address space of the last replaced entry
+	private int evictedFrame; // frame of the last replaced entry
+
+	public TranslationLookasideBuffer() {
+		this(DEFAULT_ENTRIES, DEFAULT_ENTRIES, Policy.LFU);
+	}
+
+	/**
+	 * @param entries
+	 *            : total number of entries
+	 * @param ways
+	 *            : entries per set, 1 for direct mapped and entries for fully
+	 *            associative
+	 * @param policy
+	 *            : replacement policy inside a set
+	 */
+	public TranslationLookasideBuffer(int entries, int ways, Policy policy) {
+		if (entries <= 0 || ways <= 0 || ways > entries || entries % ways != 0)
+			throw new IllegalArgumentException("Invalid TLB geometry: " + entries + " entries, " + ways + " ways");
+
+		this.entries = entries;
+		this.ways = ways;
+		this.sets = entries / ways;
+		this.setMask = (sets & (sets - 1)) == 0 ? sets - 1 : -1;
+		this.policy = policy;
+
+		asids = new int[entries];
+		pages = new long[entries];
+		frames = new int[entries];
+		stamps = new long[entries];
+
+		seed = 0x9E3779B97F4A7C15L;
+		flush();
+	}
+
+	/**
+	 * Create the TLB described by the system properties tlb.entries, tlb.ways
+	 * and tlb.policy. Without them the TLB is the original 16 entry, fully
+	 * associative TLB replacing the least frequently used entry
+	 */
+	public static TranslationLookasideBuffer fromSystemProperties() {
+		int entries = Integer.getInteger("tlb.entries", DEFAULT_ENTRIES);
+		int ways = Integer.getInteger("tlb.ways", entries);
+		Policy policy = Policy.valueOf(System.getProperty("tlb.policy", Policy.LFU.name()).toUpperCase());
+
+		return new TranslationLookasideBuffer(entries, ways, policy);
+	}
+
+	/**
+	 * Look the page up in the TLB and update its replacement metadata
+	 *
+	 * @return frame number of the page, -1 on a TLB miss
+	 */
+	public int lookup(long page) {
+		return lookup(0, page);
+	}
+
+	/**
+	 * Look the page of an address space up in the TLB and update its
+	 * replacement metadata
+	 *
+	 * @return frame number of the page, -1 on a TLB miss
+	 */
+	public int lookup(int asid, long page) {
+		int base = setOf(asid, page) * ways;
+
+		for (int i = base; i < base + ways; i++) {
+			if (pages[i] == page && asids[i] == asid) {
+				clock++;
+				if (policy == Policy.LRU)
+					stamps[i] = clock;
+				else if (policy == Policy.LFU)
+					stamps[i]++;
+				return frames[i];
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Look a huge page up in the TLB
+	 *
+	 * @param hugePage
+	 *            : huge page number, the base page number divided by the base
+	 *            pages of a huge page
+	 * @return first frame of the huge page, -1 on a TLB miss
+	 */
+	public int lookupHuge(long hugePage) {
+		return lookup(0, hugePage | HUGE_PAGE);
+	}
+
+	/**
+	 * Add a huge page to the TLB, replacing a base or a huge page entry when
+	 * its set is full
+	 *
+	 * @param hugePage
+	 *            : huge page number
+	 * @param firstFrame
+	 *            : frame of the first base page of the huge page
+	 * @return page number of the entry that was replaced, tagged with
+	 *         HUGE_PAGE for a huge page, -1 if none
+	 */
+	public long insertHuge(long hugePage, int firstFrame) {
+		return insert(0, hugePage | HUGE_PAGE, firstFrame);
+	}
+
+	/**
+	 * Remove a huge page from the TLB, used when it is split back into base
+	 * pages
+	 *
+	 * @return true if the huge page was in the TLB
+	 */
+	public boolean invalidateHuge(long hugePage) {
+		return invalidate(0, hugePage | HUGE_PAGE);
+	}
+
+	/**
+	 * Add the page to the TLB. If the page is already present its frame is
+	 * updated, otherwise an empty way or the victim of the policy is used
+	 *
+	 * @param page
+	 *            : page number
+	 * @param frame
+	 *            : frame number of the page
+	 * @return page number of the entry that was replaced, -1 if none
+	 */
+	public long insert(long page, int frame) {
+		return insert(0, page, frame);
+	}
+
+	/**
+	 * Add the page of an address space to the TLB
+	 *
+	 * @return page number of the entry that was replaced, -1 if none. The
+	 *         address space of that entry is given by getEvictedAsid()
+	 */
+	public long insert(int asid, long page, int frame) {
+		int base = setOf(asid, page) * ways;
+		int slot = -1;
+
+		for (int i = base; i < base + ways; i++) {
+			if (pages[i] == page && asids[i] == asid) {
+				frames[i] = frame;
+				return -1;
+			}
+			if (slot == -1 && pages[i] == -1)
+				slot = i;
+		}
+
+		long victim = -1;
+		if (slot == -1) {
+			slot = getVictimWay(base);
+			victim = pages[slot];
+			evictedAsid = asids[slot];
+			evictedFrame = frames[slot];
+		} else {
+			size++;
+		}
+
+		clock++;
+		asids[slot] = asid;
+		pages[slot] = page;
+		frames[slot] = frame;
+		stamps[slot] = (policy == Policy.LFU) ? 1 : clock;
+
+		return victim;
+	}
+
+	/**
+	 * Remove the page from the TLB, used when the page is evicted from memory
+	 *
+	 * @return true if the page was in the TLB
+	 */
+	public boolean invalidate(long page) {
+		return invalidate(0, page);
+	}
+
+	/**
+	 * Remove the page of an address space from the TLB
+	 *
+	 * @return true if the page was in the TLB
+	 */
+	public boolean invalidate(int asid, long page) {
+		int base = setOf(asid, page) * ways;
+
+		for (int i = base; i < base + ways; i++) {
+			if (pages[i] == page && asids[i] == asid) {
+				pages[i] = -1;
+				size--;
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Empty the whole TLB
+	 */
+	public void flush() {
+		for (int i = 0; i < entries; i++)
+			pages[i] = -1;
+		size = 0;
+	}
+
+	/**
+	 * Empty the entries of one address space, for example when its process
+	 * exits or its ASID is reused
+	 */
+	public void flush(int asid) {
+		for (int i = 0; i < entries; i++) {
+			if (pages[i] != -1 && asids[i] == asid) {
+				pages[i] = -1;
+				size--;
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Write the entries and the replacement state
+	 */
+	public void save(DataOutput out) throws IOException {
+		out.writeInt(entries);
+		out.writeInt(ways);
+		out.writeUTF(policy.name());
+		out.writeLong(clock);
+		out.writeLong(seed);
+		for (int i = 0; i < entries; i++) {
+			out.writeInt(asids[i]);
+			out.writeLong(pages[i]);
+			out.writeInt(frames[i]);
+			out.writeLong(stamps[i]);
+		}
+	}
+
+	/**
+	 * Replace the entries with the ones written by save() from a TLB of the
+	 * same geometry and policy
+	 */
+	public void restore(DataInput in) throws IOException {
+		int savedEntries = in.readInt();
+		int savedWays = in.readInt();
+		String savedPolicy = in.readUTF();
+		if (savedEntries != entries || savedWays != ways || !savedPolicy.equals(policy.name()))
+			throw new IOException("Snapshot of a " + savedEntries + " entry " + savedWays + "-way " + savedPolicy
+					+ " TLB cannot be restored into a " + this + " TLB");
+
+		clock = in.readLong();
+		seed = in.readLong();
+		size = 0;
+		for (int i = 0; i < entries; i++) {
+			asids[i] = in.readInt();
+			pages[i] = in.readLong();
+			frames[i] = in.readInt();
+			stamps[i] = in.readLong();
+			if (pages[i] != -1)
+				size++;
+		}
+	}
+
+	/**
+	 * Address space of the entry replaced by the last insert() that returned a
+	 * page
+	 */
+	public int getEvictedAsid() {
+		return evictedAsid;
+	}
+
+	/**
+	 * Frame of the entry replaced by the last insert() that returned a page
+	 */
+	public int getEvictedFrame() {
+		return evictedFrame;
+	}
+
+	public int getEntries() {
+		return entries;
+	}
+
+	public int getWays() {
+		return ways;
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	@Override
+	public String toString() {
+		return entries + " entries, " + ways + "-way, " + policy;
+	}
+
+	/**
+	 * Set of a page. The ASID is mixed in so that the same page number in
+	 * different address spaces does not always compete for the same set; with
+	 * ASID 0 the set is chosen by the page number alone
+	 */
+	private int setOf(int asid, long page) {
+		long key = page ^ (asid * 0x9E3779B97F4A7C15L);
+		if (setMask >= 0)
+			return (int) (key & setMask);
+		return (int) Long.remainderUnsigned(key, sets);
+	}
+
+	/**
+	 * Victim of a full set: the way with the smallest stamp, which is the
+	 * least recently used, the oldest or the least frequently used entry
+	 * depending on the policy
+	 */
+	private int getVictimWay(int base) {
+		if (policy == Policy.RANDOM) {
+			seed ^= seed << 13;
+			seed ^= seed >>> 7;
+			seed ^= seed << 17;
+			return base + (int) Long.remainderUnsigned(seed, ways);
+		}
+
+		int victim = base;
+		for (int i = base + 1; i < base + ways; i++) {
+			if (stamps[i] < stamps[victim])
+				victim = i;
+		}
+
+		return victim;
+	}
+}
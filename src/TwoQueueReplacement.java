@@ -0,0 +1,105 @@
+/**
+ * description : Full 2Q replacement (Johnson and Shasha).
+ * 				Newly loaded pages enter A1in, a FIFO queue of about a quarter of the frames.
+ * 				Pages evicted from A1in are remembered in the ghost queue A1out, and a page that
+ * 				faults again while remembered is loaded straight into Am, an LRU list of the hot
+ * 				pages. A single scan therefore only cycles through A1in and cannot flush Am.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public class TwoQueueReplacement implements ReplacementPolicy {
+
+	private final int inLimit; // Kin, target size of A1in
+
+	private final int framePrev[];
+	private final int frameNext[];
+	private final FrameList a1in;
+	private final FrameList am;
+	private final boolean inAm[];
+	private final long framePage[];
+
+	private final GhostList.Pool ghosts;
+	private final GhostList a1out;
+
+	public TwoQueueReplacement(int frames) {
+		inLimit = Math.max(1, frames / 4);
+
+		framePrev = new int[frames];
+		frameNext = new int[frames];
+		a1in = new FrameList(framePrev, frameNext);
+		am = new FrameList(framePrev, frameNext);
+		inAm = new boolean[frames];
+		framePage = new long[frames];
+
+		ghosts = new GhostList.Pool(Math.max(1, frames / 2)); // Kout
+		a1out = new GhostList(ghosts);
+	}
+
+	@Override
+	public void touch(int frame) {
+		if (inAm[frame])
+			am.moveToFront(frame);
+		// pages in A1in are not promoted on a hit, correlated references
+		// right after loading do not make a page hot
+	}
+
+	@Override
+	public void admit(int frame, long page) {
+		framePage[frame] = page;
+
+		if (ghosts.find(page) != null) {
+			a1out.remove(page);
+			am.addFirst(frame);
+			inAm[frame] = true;
+		} else {
+			a1in.addFirst(frame);
+			inAm[frame] = false;
+		}
+	}
+
+	@Override
+	public int victim(long page) {
+		if (a1in.size() > inLimit || am.isEmpty()) {
+			int frame = a1in.removeLast();
+			if (ghosts.isFull())
+				a1out.removeLast();
+			a1out.add(framePage[frame]);
+			return frame;
+		}
+
+		return am.removeLast();
+	}
+
+	@Override
+	public void remove(int frame) {
+		(inAm[frame] ? am : a1in).remove(frame);
+	}
+
+	@Override
+	public String getName() {
+		return "2Q";
+	}
+
+	@Override
+	public void save(DataOutput out) throws IOException {
+		for (int frame = 0; frame < framePage.length; frame++)
+			out.writeLong(framePage[frame]);
+		a1in.save(out);
+		am.save(out);
+		a1out.save(out);
+	}
+
+	@Override
+	public void restore(DataInput in) throws IOException {
+		for (int frame = 0; frame < framePage.length; frame++)
+			framePage[frame] = in.readLong();
+		a1in.restore(in);
+		am.restore(in);
+		for (int frame = am.first(); frame != -1; frame = am.next(frame))
+			inAm[frame] = true;
+		a1out.restore(in);
+	}
+}
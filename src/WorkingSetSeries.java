@@ -0,0 +1,226 @@
+/**
+ * description : Time series of the working set size and of the fault and TLB hit rates over sliding windows.
+ * 				The working set W(t, tau) is the number of distinct pages among the last tau
+ * 				references at time t. For every window tau the stage keeps W, the page faults and
+ * 				the TLB hits of the last tau references, and updates them incrementally on each
+ * 				reference: the new reference enters every window and the reference made tau
+ * 				references ago leaves it. A page enters W when its previous reference is tau or more
+ * 				references old and leaves W when the reference leaving the window was its last.
+ * 				The windows share one ring holding the pages and the events of the last references,
+ * 				as long as the widest window, and a map of the last reference of each page in it,
+ * 				so memory is fixed by the widest window and does not grow with the trace. A reference
+ * 				in the ring is marked when its page is referenced again, so a reference leaving a
+ * 				window is known to be the last of its page without a lookup, and each reference
+ * 				costs one or two operations on the map whatever the number of windows.
+ * 				Every interval references a row is written to a CSV file while the trace is still
+ * 				being translated, with W, the fault rate and the TLB hit rate of every window.
+ * 				A window shorter than its width at the start of the trace covers the references
+ * 				made so far.
+ */
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+public class WorkingSetSeries implements Closeable {
+
+	private static final int STAMP_MASK = 0x7FFFFFFF; // References are kept
+														// modulo 2^31 in the
+														// map, whose missing
+														// value is negative
+
+	private static final byte FAULT = 1;
+	private static final byte TLB_HIT = 2;
+	private static final byte SUPERSEDED = 4; // the page was referenced again
+
+	private final long widths[]; // tau of every window
+	private final int ringSize; // width of the widest window
+	private final long interval; // references between two rows
+	private final Writer out;
+
+	// Last references, the reference t being at ringPages[t % ringSize]
+	private final long ringPages[];
+	private final byte ringEvents[];
+	private int cursor; // slot of the next reference
+
+	private final LongIntHashMap lastReference; // pages referenced in the
+												// widest window
+
+	// State of every window
+	private final long workingSet[];
+	private final long faults[];
+	private final long TLBHits[];
+
+	private long references;
+	private long lastFaults; // counters of the engine at the previous
+	private long lastTLBHits; // reference
+
+	/**
+	 * @param widths
+	 *            : references covered by every window, below 2^30
+	 * @param interval
+	 *            : references between two rows of the series
+	 * @param out
+	 *            : destination of the CSV rows
+	 */
+	public WorkingSetSeries(long widths[], long interval, Writer out) throws IOException {
+		if (widths.length == 0 || interval < 1)
+			throw new IllegalArgumentException("Invalid working set series of " + widths.length
+					+ " windows every " + interval + " references");
+
+		long widest = 0;
+		for (long width : widths) {
+			if (width < 1 || width >= 1 << 30)
+				throw new IllegalArgumentException("Invalid window of " + width + " references");
+			widest = Math.max(widest, width);
+		}
+
+		this.widths = widths.clone();
+		this.ringSize = (int) widest;
+		this.interval = interval;
+		this.out = out;
+
+		ringPages = new long[ringSize];
+		ringEvents = new byte[ringSize];
+		lastReference = new LongIntHashMap();
+		workingSet = new long[widths.length];
+		faults = new long[widths.length];
+		TLBHits = new long[widths.length];
+
+		writeHeader();
+	}
+
+	/**
+	 * Create the series asked for by the system properties: workingset.windows
+	 * gives the widths of the windows separated by commas,
+	 * workingset.interval the references between two rows (the narrowest
+	 * window by default) and workingset.file the CSV file, working-set.csv by
+	 * default
+	 *
+	 * @return null when workingset.windows is not set
+	 */
+	public static WorkingSetSeries fromSystemProperties() throws IOException {
+		String windows = System.getProperty("workingset.windows");
+		if (windows == null)
+			return null;
+
+		String parts[] = windows.split(",");
+		long widths[] = new long[parts.length];
+		long narrowest = Long.MAX_VALUE;
+		for (int i = 0; i < parts.length; i++) {
+			widths[i] = Long.parseLong(parts[i].trim());
+			narrowest = Math.min(narrowest, widths[i]);
+		}
+
+		return new WorkingSetSeries(widths, Long.getLong("workingset.interval", narrowest), new BufferedWriter(
+				new FileWriter(System.getProperty("workingset.file", "working-set.csv")), 1 << 16));
+	}
+
+	/**
+	 * Record a translated reference
+	 *
+	 * @param page
+	 *            : page referenced
+	 * @param pageFaults
+	 *            : page faults of the engine so far, the reference faulted if
+	 *            they changed since the previous reference
+	 * @param TLBHits
+	 *            : TLB hits of the engine so far
+	 */
+	public void record(long page, long pageFaults, long TLBHits) throws IOException {
+		byte events = 0;
+		if (pageFaults != lastFaults)
+			events |= FAULT;
+		if (TLBHits != lastTLBHits)
+			events |= TLB_HIT;
+		lastFaults = pageFaults;
+		lastTLBHits = TLBHits;
+
+		// the page of the reference leaving the widest window is forgotten,
+		// unless it was referenced since
+		if (references >= ringSize && (ringEvents[cursor] & SUPERSEDED) == 0)
+			lastReference.remove(ringPages[cursor]);
+
+		int now = (int) references & STAMP_MASK;
+		int previous = lastReference.put(page, now);
+		long age = (previous == LongIntHashMap.MISSING) ? Long.MAX_VALUE : (now - previous) & STAMP_MASK;
+
+		for (int w = 0; w < widths.length; w++) {
+			if (references >= widths[w])
+				leave(w);
+			if (age >= widths[w])
+				workingSet[w]++; // the page was not in the window
+			if ((events & FAULT) != 0)
+				faults[w]++;
+			if ((events & TLB_HIT) != 0)
+				this.TLBHits[w]++;
+		}
+
+		if (age < ringSize) { // the previous reference is still in the ring
+			int slot = cursor - (int) age;
+			ringEvents[slot < 0 ? slot + ringSize : slot] |= SUPERSEDED;
+		}
+
+		ringPages[cursor] = page;
+		ringEvents[cursor] = events;
+		if (++cursor == ringSize)
+			cursor = 0;
+
+		if (++references % interval == 0)
+			writeRow();
+	}
+
+	/**
+	 * Remove the reference made width references ago from a window
+	 */
+	private void leave(int w) {
+		int slot = cursor - (int) widths[w];
+		if (slot < 0)
+			slot += ringSize;
+
+		byte leaving = ringEvents[slot];
+		if ((leaving & SUPERSEDED) == 0)
+			workingSet[w]--; // it was the last reference to its page
+		if ((leaving & FAULT) != 0)
+			faults[w]--;
+		if ((leaving & TLB_HIT) != 0)
+			TLBHits[w]--;
+	}
+
+	private void writeHeader() throws IOException {
+		StringBuilder header = new StringBuilder("references");
+		for (long width : widths)
+			header.append(",working_set_").append(width).append(",fault_rate_").append(width)
+					.append(",tlb_hit_rate_").append(width);
+		out.write(header.append('\n').toString());
+	}
+
+	private void writeRow() throws IOException {
+		StringBuilder row = new StringBuilder();
+		row.append(references);
+		for (int w = 0; w < widths.length; w++) {
+			long covered = Math.min(references, widths[w]);
+			row.append(',').append(workingSet[w]).append(',').append((float) faults[w] / covered).append(',')
+					.append((float) TLBHits[w] / covered);
+		}
+		out.write(row.append('\n').toString());
+	}
+
+	/**
+	 * Working set of a window at the last reference
+	 */
+	public long getWorkingSet(int window) {
+		return workingSet[window];
+	}
+
+	public long getReferences() {
+		return references;
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,396 @@
+/**
+ * description : Synthetic stream of memory accesses, generated on the fly instead of read from a trace.
+ * 				The accesses fall in a footprint of pages starting at page 0, at a random offset in
+ * 				the page, and a configurable fraction of them are writes. The workloads are:
+ * 					uniform : every page of the footprint equally likely
+ * 					zipf    : page i drawn with a probability proportional to 1/(i+1)^exponent, the
+ * 					          first pages being the hottest
+ * 					scan    : the footprint read from start to end every stride bytes, over and over
+ * 					loop    : the first loop pages visited in turn, one access each, which defeats
+ * 					          LRU as soon as the loop is larger than physical memory
+ * 					phase   : uniform accesses to a working set of phase pages that moves to a random
+ * 					          place of the footprint every phase length accesses
+ * 				Random numbers come from SplitMix64, so a seed gives the same stream on every run.
+ * 				Zipfian pages are drawn from an alias table built once, in constant time per
+ * 				access, and nothing is allocated per access, so the generator outruns the engine.
+ */
+
+public class WorkloadGenerator {
+
+	private static final int UNIFORM = 0;
+	private static final int ZIPF = 1;
+	private static final int SCAN = 2;
+	private static final int LOOP = 3;
+	private static final int PHASE = 4;
+
+	private static final int MAX_ZIPF_PAGES = 1 << 26; // alias table of 512 MB
+
+	private final String type;
+	private final int kind;
+	private final int offsetBits;
+	private final long offsetMask;
+	private final long pages; // footprint
+	private final long accesses; // length of the stream
+	private final int writeThreshold; // writes when 16 random bits are below
+	private final long seed;
+
+	// Parameters of the workloads, fixed by the first access
+	private double zipfExponent = 0.99;
+	private long loopPages;
+	private long phaseLength = 1000000;
+	private long phasePages;
+	private int stride = 64;
+
+	private int aliasThreshold[] = null; // Alias table of the zipf workload:
+	private int alias[] = null; // page i is kept when 31 random bits are
+								// below aliasThreshold[i], else alias[i]
+								// is taken
+	private final boolean wideOffsets; // offsets too wide to share a random
+										// number with the page
+
+	private boolean started;
+	private long state; // SplitMix64 state
+	private long generated; // accesses returned so far
+	private long position; // next address of scan, next page of loop
+	private long phaseBase; // first page of the current working set
+	private long phaseLeft; // accesses before the working set moves
+
+	private long address; // current access
+	private boolean write;
+
+	/**
+	 * @param type
+	 *            : uniform, zipf, scan, loop or phase
+	 * @param geometry
+	 *            : layout of the generated addresses
+	 * @param pages
+	 *            : pages of the footprint, at most the pages of the address
+	 *            space
+	 * @param accesses
+	 *            : number of accesses before next() returns false
+	 * @param writeRatio
+	 *            : fraction of the accesses that are writes, from 0 to 1
+	 * @param seed
+	 *            : seed of the random numbers
+	 */
+	public WorkloadGenerator(String type, AddressGeometry geometry, long pages, long accesses, double writeRatio,
+			long seed) {
+		switch (type.toLowerCase()) {
+		case "uniform":
+			kind = UNIFORM;
+			break;
+		case "zipf":
+			kind = ZIPF;
+			break;
+		case "scan":
+			kind = SCAN;
+			break;
+		case "loop":
+			kind = LOOP;
+			break;
+		case "phase":
+			kind = PHASE;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown workload: " + type);
+		}
+		if (pages < 1 || pages > geometry.getPageCount() || pages > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Invalid footprint of " + pages + " pages for " + geometry);
+		if (writeRatio < 0 || writeRatio > 1)
+			throw new IllegalArgumentException("Invalid write ratio " + writeRatio);
+
+		this.type = type.toLowerCase();
+		this.offsetBits = geometry.getOffsetBits();
+		this.offsetMask = geometry.getPageSize() - 1;
+		this.wideOffsets = offsetBits > 16;
+		this.pages = pages;
+		this.accesses = accesses;
+		this.writeThreshold = (int) Math.round(writeRatio * (1 << 16));
+		this.seed = seed;
+
+		loopPages = Math.min(pages, 256);
+		phasePages = Math.max(1, pages / 8);
+	}
+
+	/**
+	 * Create the workload described by the system properties: workload (type),
+	 * workload.pages (footprint, the whole address space up to 2^20 pages by
+	 * default), workload.accesses, workload.writes (write ratio),
+	 * workload.seed, workload.zipf.exponent, workload.scan.stride,
+	 * workload.loop.pages, workload.phase.length and workload.phase.pages
+	 */
+	public static WorkloadGenerator fromSystemProperties(AddressGeometry geometry) {
+		long pages = Long.getLong("workload.pages", Math.min(geometry.getPageCount(), 1 << 20));
+
+		WorkloadGenerator generator = new WorkloadGenerator(System.getProperty("workload", "zipf"), geometry, pages,
+				Long.getLong("workload.accesses", 100000000),
+				Double.parseDouble(System.getProperty("workload.writes", "0.25")), Long.getLong("workload.seed", 42));
+
+		generator.setZipfExponent(Double.parseDouble(System.getProperty("workload.zipf.exponent", "0.99")));
+		generator.setScanStride(Integer.getInteger("workload.scan.stride", 64));
+		generator.setLoopPages(Long.getLong("workload.loop.pages", generator.loopPages));
+		generator.setPhase(Long.getLong("workload.phase.length", generator.phaseLength),
+				Long.getLong("workload.phase.pages", generator.phasePages));
+
+		return generator;
+	}
+
+	/**
+	 * Exponent of the zipf workload, 0 being uniform and larger values more
+	 * skewed
+	 */
+	public void setZipfExponent(double exponent) {
+		checkNotStarted();
+		if (exponent < 0)
+			throw new IllegalArgumentException("Invalid zipf exponent " + exponent);
+		zipfExponent = exponent;
+	}
+
+	/**
+	 * Bytes between two accesses of the scan workload
+	 */
+	public void setScanStride(int stride) {
+		checkNotStarted();
+		if (stride < 1)
+			throw new IllegalArgumentException("Invalid scan stride " + stride);
+		this.stride = stride;
+	}
+
+	/**
+	 * Pages visited in turn by the loop workload
+	 */
+	public void setLoopPages(long loopPages) {
+		checkNotStarted();
+		if (loopPages < 1 || loopPages > pages)
+			throw new IllegalArgumentException("Invalid loop of " + loopPages + " pages");
+		this.loopPages = loopPages;
+	}
+
+	/**
+	 * Working set of the phase workload
+	 *
+	 * @param length
+	 *            : accesses before the working set moves
+	 * @param phasePages
+	 *            : pages of the working set
+	 */
+	public void setPhase(long length, long phasePages) {
+		checkNotStarted();
+		if (length < 1 || phasePages < 1 || phasePages > pages)
+			throw new IllegalArgumentException(
+					"Invalid phases of " + length + " accesses to " + phasePages + " pages");
+		this.phaseLength = length;
+		this.phasePages = phasePages;
+	}
+
+	/**
+	 * Generate the next access. One random number gives the page from its
+	 * high half, and the write flag and the offset from its low half. The
+	 * workloads are in small methods so that this one is inlined into the
+	 * translation loop
+	 *
+	 * @return false once all the accesses have been generated
+	 */
+	public boolean next() {
+		if (generated == accesses)
+			return false;
+		if (!started)
+			start();
+		generated++;
+
+		long random = nextRandom();
+		write = ((int) random & 0xFFFF) < writeThreshold;
+		if (kind == SCAN) {
+			address = nextScanAddress();
+			return true;
+		}
+
+		long page;
+		switch (kind) {
+		case UNIFORM:
+			page = scale(random, pages);
+			break;
+		case ZIPF:
+			page = zipfPage(random);
+			break;
+		case LOOP:
+			page = nextLoopPage();
+			break;
+		default:
+			page = phasePage(random);
+			break;
+		}
+
+		long offset = wideOffsets ? nextRandom() & offsetMask : (random >>> 16) & offsetMask;
+		address = page << offsetBits | offset;
+		return true;
+	}
+
+	/**
+	 * The integer part of the product picks a slot of the alias table and its
+	 * fraction decides between the page of the slot and its alias
+	 */
+	private long zipfPage(long random) {
+		long product = (random >>> 32) * pages;
+		int index = (int) (product >>> 32);
+		// -1 to keep the slot, computed without a branch since the coin is
+		// unpredictable
+		int keep = (((int) product >>> 1) - aliasThreshold[index]) >> 31;
+		return (index & keep) | (alias[index] & ~keep);
+	}
+
+	private long nextScanAddress() {
+		long scanned = position;
+		position += stride;
+		if (position >>> offsetBits >= pages)
+			position = 0;
+		return scanned;
+	}
+
+	private long nextLoopPage() {
+		long page = position;
+		if (++position == loopPages)
+			position = 0;
+		return page;
+	}
+
+	private long phasePage(long random) {
+		if (phaseLeft-- == 0) { // the working set moves
+			phaseBase = scale(nextRandom(), pages - phasePages + 1);
+			phaseLeft = phaseLength - 1;
+		}
+		return phaseBase + scale(random, phasePages);
+	}
+
+	/**
+	 * Number in [0, bound) taken from the high half of a random number
+	 */
+	private static long scale(long random, long bound) {
+		return ((random >>> 32) * bound) >>> 32;
+	}
+
+	/**
+	 * Logical address of the current access
+	 */
+	public long address() {
+		return address;
+	}
+
+	/**
+	 * True if the current access is a write
+	 */
+	public boolean isWrite() {
+		return write;
+	}
+
+	/**
+	 * Accesses generated so far
+	 */
+	public long getGenerated() {
+		return generated;
+	}
+
+	public long getAccesses() {
+		return accesses;
+	}
+
+	@Override
+	public String toString() {
+		String shape;
+		switch (kind) {
+		case ZIPF:
+			shape = ", exponent " + zipfExponent;
+			break;
+		case SCAN:
+			shape = ", stride " + stride + " bytes";
+			break;
+		case LOOP:
+			shape = ", loop of " + loopPages + " pages";
+			break;
+		case PHASE:
+			shape = ", " + phasePages + " pages for " + phaseLength + " accesses";
+			break;
+		default:
+			shape = "";
+			break;
+		}
+		return type + shape + ", " + pages + " pages, " + accesses + " accesses, "
+				+ (float) writeThreshold / (1 << 16) + " writes, seed " + seed;
+	}
+
+	private void checkNotStarted() {
+		if (started)
+			throw new IllegalStateException("The workload has already started");
+	}
+
+	/**
+	 * Seed the random numbers and build the alias table of the zipf workload
+	 */
+	private void start() {
+		started = true;
+		state = seed;
+		if (kind == ZIPF)
+			buildAliasTable();
+	}
+
+	/**
+	 * Vose's alias method: the probabilities scaled by the number of pages are
+	 * split into pages below 1, which lend the rest of their slot to an alias,
+	 * and pages above 1, which take it
+	 */
+	private void buildAliasTable() {
+		if (pages > MAX_ZIPF_PAGES)
+			throw new IllegalArgumentException("Zipf workload limited to " + MAX_ZIPF_PAGES + " pages");
+
+		int n = (int) pages;
+		double scaled[] = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = Math.pow(i + 1, -zipfExponent);
+			sum += scaled[i];
+		}
+		for (int i = 0; i < n; i++)
+			scaled[i] *= n / sum;
+
+		aliasThreshold = new int[n];
+		alias = new int[n];
+		int small[] = new int[n];
+		int large[] = new int[n];
+		int smallCount = 0, largeCount = 0;
+		for (int i = n - 1; i >= 0; i--) {
+			if (scaled[i] < 1)
+				small[smallCount++] = i;
+			else
+				large[largeCount++] = i;
+		}
+
+		while (smallCount > 0 && largeCount > 0) {
+			int less = small[--smallCount];
+			int more = large[--largeCount];
+			aliasThreshold[less] = (int) (scaled[less] * 0x80000000L);
+			alias[less] = more;
+			scaled[more] -= 1 - scaled[less];
+			if (scaled[more] < 1)
+				small[smallCount++] = more;
+			else
+				large[largeCount++] = more;
+		}
+		// left over by rounding, their slot is whole
+		while (largeCount > 0)
+			keepWhole(large[--largeCount]);
+		while (smallCount > 0)
+			keepWhole(small[--smallCount]);
+	}
+
+	private void keepWhole(int page) {
+		aliasThreshold[page] = Integer.MAX_VALUE;
+		alias[page] = page;
+	}
+
+	private long nextRandom() {
+		long z = (state += 0x9E3779B97F4A7C15L); // SplitMix64
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,193 @@
+/**
+ * description : This program translates a synthetic workload streamed by a WorkloadGenerator.
+ * 				No trace is read: the generator produces the accesses as they are translated, so a
+ * 				run of billions of accesses needs no disk space and measures the engine rather than
+ * 				trace parsing. The workload is configured by the workload system properties and the
+ * 				engine is the one of ModifiedSizeTranslation, or of DirtyBitTranslation with
+ * 				workload.translator=dirtyBit. workload.translator=none only runs the generator, to
+ * 				measure its own rate.
+ * 				The results are discarded unless the output system property is given, and the run
+ * 				prints its throughput followed by the statistics of the engine.
+ */
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+public class WorkloadTranslation {
+
+	private final AddressGeometry geometry; // Page size and address width,
+											// from the page.size and
+											// address.bits system properties
+
+	private final String FILEPATH = "./docs/";
+	private final String BACKING_STORE_FILENAME = "BACKING_STORE.bin";
+
+	private final String backingStoreFileName; // Backing store given on the
+												// command line or
+												// BACKING_STORE_FILENAME
+	// Engine translating the workload: modifiedSize, dirtyBit or none
+	private final String translator = System.getProperty("workload.translator", "modifiedSize");
+	// Copy receiving the dirty pages of dirtyBit, temporary if not set
+	private final String SWAP_FILENAME = System.getProperty("swap.file");
+
+	private WorkloadGenerator workload = null; // Accesses to translate
+	private ResultSink sink = null; // Destination of the translated addresses
+
+	private BackingStore backingStore = null;
+	private TranslationEngine engine = null; // Engine translating the
+												// addresses, null for none
+	private WorkingSetSeries workingSet = null; // Working set and windowed
+												// rates, from the workingset
+												// system properties
+	private SimulatorMetrics metrics = null; // Live counters and latencies,
+												// from the metrics and
+												// metrics.interval system
+												// properties
+
+	public WorkloadTranslation() {
+		this(null);
+	}
+
+	/**
+	 * @param backingStoreFileName
+	 *            : backing store, null for docs/BACKING_STORE.bin
+	 */
+	public WorkloadTranslation(String backingStoreFileName) {
+		this.backingStoreFileName = (backingStoreFileName != null) ? backingStoreFileName
+				: FILEPATH + BACKING_STORE_FILENAME;
+
+		geometry = AddressGeometry.fromSystemProperties();
+	}
+
+	public static void main(String[] args) {
+		new WorkloadTranslation(args.length > 0 ? args[0] : null).init();
+	}
+
+	public void init() {
+
+		long elapsed = 0;
+		long checksum = 0; // sum of the addresses, when only generating
+		try {
+			workload = WorkloadGenerator.fromSystemProperties(geometry);
+			sink = System.getProperty("output") != null ? ResultSink.fromSystemProperties() : new NullResultSink();
+
+			switch (translator.toLowerCase()) {
+			case "modifiedsize":
+				backingStore = new BackingStore(backingStoreFileName, geometry.getPageSize());
+				engine = TranslationEngine.modifiedSize(geometry, backingStore);
+				break;
+			case "dirtybit":
+				backingStore = BackingStore.writableCopy(backingStoreFileName, SWAP_FILENAME, geometry.getPageSize());
+				engine = TranslationEngine.dirtyBit(geometry, backingStore);
+				break;
+			case "none":
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown translator: " + translator);
+			}
+
+			if (engine != null) {
+				if (engine.getPolicy() instanceof OPTReplacement)
+					throw new IllegalArgumentException("The opt policy needs a trace file to look ahead");
+				metrics = SimulatorMetrics.fromSystemProperties("WorkloadTranslation");
+				engine.setMetrics(metrics);
+				workingSet = WorkingSetSeries.fromSystemProperties();
+			}
+
+			System.out.println("Workload : " + workload);
+
+			long start = System.nanoTime();
+			if (engine == null) {
+				while (workload.next())
+					checksum += workload.address();
+			} else {
+				while (workload.next()) {
+					long logicalAddress = workload.address();
+					long physicalAddress = engine.translate(logicalAddress, workload.isWrite());
+
+					if (physicalAddress != TranslationEngine.INVALID_ADDRESS) {
+						sink.record(logicalAddress, physicalAddress, engine.getValue());
+						if (workingSet != null)
+							workingSet.record(geometry.pageNumber(logicalAddress), engine.getPageFaults(),
+									engine.getTLBHits());
+					}
+				}
+				if (engine.getFlusher() != null)
+					engine.sync();
+			}
+			elapsed = System.nanoTime() - start;
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			closeSink();
+			closeMetrics();
+			closeWorkingSet();
+			closeEngine();
+			closeBackingStore();
+		}
+
+		if (workload == null || elapsed == 0)
+			return;
+
+		System.out.println(String.format("Throughput : %d accesses in %d ms, %.0f accesses/s",
+				workload.getGenerated(), elapsed / 1000000, workload.getGenerated() / (elapsed / 1e9)));
+		if (engine == null) {
+			System.out.println("Checksum of addresses : " + checksum);
+			return;
+		}
+
+		PhysicalMemory memory = engine.getPhysicalMemory();
+		System.out.println("Physical Memory : " + memory.getFrames() + " frames, " + memory.getSize() + " bytes, "
+				+ memory.getAllocatedBytes() + " bytes allocated off the heap");
+		engine.printStatistics();
+		if (engine.getFlusher() != null)
+			engine.printWriteBackStatistics();
+	}
+
+	private void closeSink() {
+		if (sink != null) {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void closeWorkingSet() {
+		if (workingSet != null) {
+			try {
+				workingSet.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void closeMetrics() {
+		if (metrics != null)
+			metrics.close(); // the counters stay readable for the statistics
+	}
+
+	private void closeEngine() {
+		if (engine != null) {
+			try {
+				engine.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void closeBackingStore() {
+		if (backingStore != null) {
+			try {
+				backingStore.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,336 @@
+/**
+ * description : Background thread writing dirty pages back to a writable backing store.
+ * 				The translator hands a dirty page over by copying it into a slot of a fixed ring
+ * 				and goes on at once, the flusher thread takes every queued slot, sorts the pages
+ * 				and writes each run of adjacent pages with a single call.
+ * 				A page queued again before the flusher took it only replaces the slot contents,
+ * 				so a page written many times is written back once. A page fault only has to wait
+ * 				if the page it loads is still queued or being written.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class WriteBehindFlusher implements Closeable, Runnable {
+
+	public static final int DEFAULT_SLOTS = 32;
+
+	private final BackingStore backingStore;
+	private final int pageSize;
+	private final int slotCount;
+
+	// Slot i of the ring is made of slotPages[i], slotSequences[i] and the
+	// bytes [i * pageSize, (i + 1) * pageSize) of slotData
+	// slotPages : page held by the slot
+	// slotSequences : position of the slot in the stream of submitted pages,
+	// slots with a sequence below taken belong to the flusher
+	private final byte slotData[];
+	private final long slotPages[];
+	private final long slotSequences[];
+	private final LongIntHashMap pendingSlots; // slot of every queued page
+
+	private final ByteBuffer staging; // contiguous copy of a run of pages
+	private final int batch[]; // slots of the batch being written, by page
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition written = lock.newCondition();
+
+	private long head; // sequence of the next submitted page
+	private long taken; // sequence of the first slot not taken by the flusher
+	private long tail; // sequence of the first slot not yet written
+	private boolean closed;
+	private IOException failure; // error of the flusher thread
+
+	private final Thread thread;
+
+	// Statistics
+	private long pagesSubmitted;
+	private long pagesCoalesced; // submissions merged into a queued slot
+	private long pagesWritten;
+	private long writeCalls;
+	private long faultWaits; // page faults that waited for a write
+	private long fullWaits; // submissions that waited for a free slot
+
+	/**
+	 * @param backingStore
+	 *            : writable backing store receiving the pages
+	 * @param slotCount
+	 *            : number of pages that can be queued
+	 */
+	public WriteBehindFlusher(BackingStore backingStore, int slotCount) {
+		if (!backingStore.isWritable())
+			throw new IllegalArgumentException("Backing store is read only");
+		if (slotCount <= 0)
+			throw new IllegalArgumentException("Invalid slot count " + slotCount);
+
+		this.backingStore = backingStore;
+		this.pageSize = backingStore.getPageSize();
+		this.slotCount = slotCount;
+
+		slotData = new byte[slotCount * pageSize];
+		slotPages = new long[slotCount];
+		slotSequences = new long[slotCount];
+		pendingSlots = new LongIntHashMap(slotCount);
+
+		staging = ByteBuffer.allocateDirect(slotCount * pageSize);
+		batch = new int[slotCount];
+
+		thread = new Thread(this, "write-behind-flusher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Create a flusher with the number of slots given by the writeback.slots
+	 * system property
+	 */
+	public static WriteBehindFlusher fromSystemProperties(BackingStore backingStore) {
+		return new WriteBehindFlusher(backingStore, Integer.getInteger("writeback.slots", DEFAULT_SLOTS));
+	}
+
+	/**
+	 * Queue a copy of the page for writing. Returns as soon as the page is
+	 * copied, waiting only while every slot is in use
+	 *
+	 * @param page
+	 *            : page number
+	 * @param source
+	 *            : buffer holding the page between its position and its limit,
+	 *            normally a frame of the physical memory. Its position is
+	 *            moved to its limit
+	 */
+	public void submit(long page, ByteBuffer source) throws IOException {
+		lock.lock();
+		try {
+			checkFailure();
+			pagesSubmitted++;
+
+			int slot = pendingSlots.get(page);
+			if (slot != LongIntHashMap.MISSING && slotSequences[slot] >= taken) {
+				// Still queued, the newer contents replace the older ones
+				source.get(slotData, slot * pageSize, pageSize);
+				pagesCoalesced++;
+				return;
+			}
+
+			if (head - tail == slotCount) {
+				fullWaits++;
+				while (head - tail == slotCount) {
+					written.awaitUninterruptibly();
+					checkFailure();
+				}
+			}
+
+			slot = (int) (head % slotCount);
+			source.get(slotData, slot * pageSize, pageSize);
+			slotPages[slot] = page;
+			slotSequences[slot] = head;
+			pendingSlots.put(page, slot); // replaces a slot being written
+			head++;
+
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait until the page is no longer queued or being written, so that it can
+	 * be read back from the backing store. Called before a page fault reads the
+	 * page
+	 *
+	 * @return true if the caller had to wait
+	 */
+	public boolean awaitPage(long page) throws IOException {
+		lock.lock();
+		try {
+			checkFailure();
+			if (!pendingSlots.containsKey(page))
+				return false;
+
+			faultWaits++;
+			while (pendingSlots.containsKey(page)) {
+				written.awaitUninterruptibly();
+				checkFailure();
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Number of pages queued or being written
+	 */
+	public int pending() {
+		lock.lock();
+		try {
+			return (int) (head - tail);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Write every queued page and wait for the writes to complete
+	 */
+	public void drain() throws IOException {
+		lock.lock();
+		try {
+			while (tail != head) {
+				written.awaitUninterruptibly();
+				checkFailure();
+			}
+			checkFailure();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Write the queued pages and stop the flusher thread. The backing store is
+	 * not closed
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		lock.lock();
+		try {
+			checkFailure();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Flusher thread: take every queued slot, write it and release the slots
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			long first;
+			long last;
+
+			lock.lock();
+			try {
+				while (head == taken && !closed)
+					notEmpty.awaitUninterruptibly();
+				if (head == taken)
+					return; // closed and nothing left to write
+				first = taken;
+				last = head;
+				taken = head;
+			} finally {
+				lock.unlock();
+			}
+
+			IOException error = null;
+			try {
+				writeBatch(first, last);
+			} catch (IOException e) {
+				error = e;
+			}
+
+			lock.lock();
+			try {
+				for (long sequence = first; sequence < last; sequence++) {
+					int slot = (int) (sequence % slotCount);
+					if (pendingSlots.get(slotPages[slot]) == slot && slotSequences[slot] == sequence)
+						pendingSlots.remove(slotPages[slot]);
+				}
+				tail = last;
+				if (error != null && failure == null)
+					failure = error;
+				written.signalAll();
+			} finally {
+				lock.unlock();
+			}
+
+			if (error != null)
+				return;
+		}
+	}
+
+	/**
+	 * Write the slots of the sequences [first, last). The slots are sorted by
+	 * page and every run of adjacent pages is copied to the staging buffer and
+	 * written with one call. The slots are not touched by the translator while
+	 * they are taken
+	 */
+	private void writeBatch(long first, long last) throws IOException {
+		int count = (int) (last - first);
+		for (int i = 0; i < count; i++) {
+			int slot = (int) ((first + i) % slotCount);
+			// Insertion sort by page, batches are at most slotCount long
+			int j = i;
+			while (j > 0 && slotPages[batch[j - 1]] > slotPages[slot]) {
+				batch[j] = batch[j - 1];
+				j--;
+			}
+			batch[j] = slot;
+		}
+
+		int start = 0;
+		while (start < count) {
+			int end = start + 1;
+			while (end < count && slotPages[batch[end]] == slotPages[batch[end - 1]] + 1)
+				end++;
+
+			staging.clear();
+			for (int i = start; i < end; i++)
+				staging.put(slotData, batch[i] * pageSize, pageSize);
+			staging.flip();
+			backingStore.writePages(slotPages[batch[start]], staging);
+
+			pagesWritten += end - start;
+			writeCalls++;
+			start = end;
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null)
+			throw new IOException("Write-back failed", failure);
+	}
+
+	public long getPagesSubmitted() {
+		return pagesSubmitted;
+	}
+
+	public long getPagesCoalesced() {
+		return pagesCoalesced;
+	}
+
+	public long getPagesWritten() {
+		return pagesWritten;
+	}
+
+	public long getWriteCalls() {
+		return writeCalls;
+	}
+
+	public long getFaultWaits() {
+		return faultWaits;
+	}
+
+	public long getFullWaits() {
+		return fullWaits;
+	}
+}